@@ -0,0 +1,183 @@
+package com.example.android.sunshine.weatherwear;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.explore.archana.weatherwear.ForecastAdapter;
+import com.explore.archana.weatherwear.ForecastRow;
+import com.explore.archana.weatherwear.ForecastRowDiff;
+import com.explore.archana.weatherwear.R;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+    Checks a reload only tells the RecyclerView about the days that changed, and times binding
+    a preformatted row against formatting it, which is what every bind used to do.
+ */
+public class TestForecastAdapter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastAdapter.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int DAYS = 14;
+    private static final int BENCHMARK_PASSES = 50;
+
+    private long mToday;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mToday = System.currentTimeMillis();
+    }
+
+    public void testTwoChangedDaysAreTwoChanges() {
+        List<ForecastRow> oldRows = createRows(0, DAYS, 0);
+        List<ForecastRow> newRows = new ArrayList<ForecastRow>(oldRows);
+        newRows.set(3, createRow(3, 5));
+        newRows.set(9, createRow(9, 5));
+
+        RecordingCallback callback = new RecordingCallback();
+        ForecastRowDiff.dispatch(oldRows, newRows, callback);
+        assertEquals("changed 3+1, changed 9+1", callback.toString());
+    }
+
+    public void testNextDayShiftsTheList() {
+        // a day later: yesterday's row goes, a new last day comes
+        List<ForecastRow> oldRows = createRows(0, DAYS, 0);
+        List<ForecastRow> newRows = createRows(1, DAYS, 0);
+
+        RecordingCallback callback = new RecordingCallback();
+        ForecastRowDiff.dispatch(oldRows, newRows, callback);
+        assertEquals("removed 0+1, inserted 13+1", callback.toString());
+    }
+
+    public void testEmptyLists() {
+        RecordingCallback callback = new RecordingCallback();
+        ForecastRowDiff.dispatch(new ArrayList<ForecastRow>(), createRows(0, 3, 0), callback);
+        assertEquals("inserted 0+3", callback.toString());
+
+        callback = new RecordingCallback();
+        ForecastRowDiff.dispatch(createRows(0, 3, 0), new ArrayList<ForecastRow>(), callback);
+        assertEquals("removed 0+3", callback.toString());
+    }
+
+    public void testReloadRebindsOnlyChangedRows() {
+        ForecastAdapter adapter = createAdapter();
+        adapter.swapRows(createRows(0, DAYS, 0));
+        final int[] changed = new int[1];
+        final int[] resets = new int[1];
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                resets[0]++;
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                changed[0] += itemCount;
+            }
+        });
+
+        List<ForecastRow> newRows = createRows(0, DAYS, 0);
+        newRows.set(2, createRow(2, 3));
+        newRows.set(4, createRow(4, -2));
+        adapter.swapRows(newRows);
+
+        assertEquals("Error: a reload shouldn't rebind everything", 0, resets[0]);
+        assertEquals(2, changed[0]);
+        assertEquals(newRows.get(4).date, adapter.getItemId(4));
+    }
+
+    public void testBindBenchmark() {
+        Context context = new ContextThemeWrapper(mContext, R.style.AppTheme);
+        RecyclerView recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        ForecastAdapter adapter = createAdapter();
+        List<ForecastRow> rows = createRows(0, DAYS, 0);
+        adapter.swapRows(rows);
+        ForecastAdapter.ForecastAdapterViewHolder holder =
+                adapter.onCreateViewHolder(recyclerView, adapter.getItemViewType(1));
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int i = 1; i < DAYS; i++) {
+                adapter.onBindViewHolder(holder, i);
+            }
+        }
+        long bindNanos = System.nanoTime() - start;
+
+        // the formatting that used to happen inside every bind
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int i = 1; i < DAYS; i++) {
+                ForecastRow.create(mContext, rows.get(i).date, 500, 20, 10, true, null, false);
+            }
+        }
+        long formatNanos = System.nanoTime() - start;
+
+        int binds = BENCHMARK_PASSES * (DAYS - 1);
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d binds: %.1f us/bind of a preformatted row, formatting alone was %.1f us/row",
+                binds, bindNanos / 1e3 / binds, formatNanos / 1e3 / binds));
+    }
+
+    private ForecastAdapter createAdapter() {
+        return new ForecastAdapter(mContext, new ForecastAdapter.ForecastAdapterOnClickHandler() {
+            @Override
+            public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {
+            }
+        }, new View(mContext), AbsListView.CHOICE_MODE_NONE);
+    }
+
+    private List<ForecastRow> createRows(int firstDay, int count, double tempOffset) {
+        List<ForecastRow> rows = new ArrayList<ForecastRow>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(createRow(firstDay + i, tempOffset));
+        }
+        return rows;
+    }
+
+    private ForecastRow createRow(int day, double tempOffset) {
+        return ForecastRow.create(mContext, mToday + day * DAY_IN_MILLIS, 500,
+                20 + day + tempOffset, 10 + tempOffset, true, null, day == 0);
+    }
+
+    static class RecordingCallback implements ForecastRowDiff.Callback {
+        private final StringBuilder mUpdates = new StringBuilder();
+
+        @Override
+        public void onInserted(int position, int count) {
+            add("inserted", position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            add("removed", position, count);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            add("changed", position, count);
+        }
+
+        private void add(String type, int position, int count) {
+            if (mUpdates.length() > 0) {
+                mUpdates.append(", ");
+            }
+            mUpdates.append(type).append(' ').append(position).append('+').append(count);
+        }
+
+        @Override
+        public String toString() {
+            return mUpdates.toString();
+        }
+    }
+}
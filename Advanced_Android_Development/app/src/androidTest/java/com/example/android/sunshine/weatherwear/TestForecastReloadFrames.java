@@ -0,0 +1,136 @@
+package com.example.android.sunshine.weatherwear;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.explore.archana.weatherwear.ForecastAdapter;
+import com.explore.archana.weatherwear.ForecastRow;
+import com.explore.archana.weatherwear.MainActivity;
+import com.explore.archana.weatherwear.R;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Reloads the forecast list on screen, with two days changed, and watches the frames drawn
+    meanwhile for any that took longer than two vsyncs.
+ */
+public class TestForecastReloadFrames extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    public static final String LOG_TAG = TestForecastReloadFrames.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int DAYS = 14;
+    private static final int RELOADS = 10;
+    private static final int FRAMES_PER_RELOAD = 6;
+    // two frames at 60 fps
+    private static final long JANK_NANOS = 2 * 16666667L;
+    private static final int MAX_JANKY_FRAMES = 2;
+
+    public TestForecastReloadFrames() {
+        super(MainActivity.class);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void testReloadDoesNotDropFrames() throws Throwable {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // no Choreographer to count frames with
+            return;
+        }
+        RecyclerView recyclerView =
+                (RecyclerView) getActivity().findViewById(R.id.recyclerview_forecast);
+        final ForecastAdapter adapter = (ForecastAdapter) recyclerView.getAdapter();
+        final List<ForecastRow> rows = createRows(0);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                adapter.swapRows(rows);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+
+        final FrameWatcher watcher = new FrameWatcher(RELOADS * FRAMES_PER_RELOAD);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(watcher);
+            }
+        });
+        for (int i = 1; i <= RELOADS; i++) {
+            final List<ForecastRow> newRows = new ArrayList<ForecastRow>(rows);
+            newRows.set(1, createRow(1, i));
+            newRows.set(5, createRow(5, -i));
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    adapter.swapRows(newRows);
+                }
+            });
+            Thread.sleep(FRAMES_PER_RELOAD * 16);
+        }
+        assertTrue("Error: frames stopped coming", watcher.await());
+
+        Log.i(LOG_TAG, watcher.getJankyFrames() + " of " + watcher.getFrames()
+                + " frames took longer than two vsyncs over " + RELOADS + " reloads");
+        assertTrue("Error: reloading dropped frames: " + watcher.getJankyFrames(),
+                watcher.getJankyFrames() <= MAX_JANKY_FRAMES);
+    }
+
+    private List<ForecastRow> createRows(double tempOffset) {
+        List<ForecastRow> rows = new ArrayList<ForecastRow>(DAYS);
+        for (int i = 0; i < DAYS; i++) {
+            rows.add(createRow(i, tempOffset));
+        }
+        return rows;
+    }
+
+    private ForecastRow createRow(int day, double tempOffset) {
+        return ForecastRow.create(getInstrumentation().getTargetContext(),
+                System.currentTimeMillis() + day * DAY_IN_MILLIS, 800, 20 + tempOffset,
+                10 + tempOffset, true, null, day == 0);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    static class FrameWatcher implements Choreographer.FrameCallback {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private final int mFramesWanted;
+        private long mLastFrameNanos;
+        private volatile int mFrames;
+        private volatile int mJankyFrames;
+
+        FrameWatcher(int framesWanted) {
+            mFramesWanted = framesWanted;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mLastFrameNanos != 0 && frameTimeNanos - mLastFrameNanos > JANK_NANOS) {
+                mJankyFrames++;
+            }
+            mLastFrameNanos = frameTimeNanos;
+            if (++mFrames < mFramesWanted) {
+                Choreographer.getInstance().postFrameCallback(this);
+            } else {
+                mDone.countDown();
+            }
+        }
+
+        boolean await() throws InterruptedException {
+            return mDone.await(10, TimeUnit.SECONDS);
+        }
+
+        int getFrames() {
+            return mFrames;
+        }
+
+        int getJankyFrames() {
+            return mJankyFrames;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.android.sunshine.weatherwear;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.weatherwear.utils.PollingCheck;
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.Settings;
+import com.explore.archana.weatherwear.Utility;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/*
+    Checks the settings snapshot follows the preferences, gets a new version when one of its
+    settings changes and keeps the same one when something else does.
+ */
+public class TestSettings extends AndroidTestCase {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private SharedPreferences mPrefs;
+    private Map<String, ?> mSaved;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mSaved = mPrefs.getAll();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        // Put back what the user had
+        SharedPreferences.Editor editor = mPrefs.edit().clear();
+        for (Map.Entry<String, ?> entry : mSaved.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                editor.putString(entry.getKey(), (String) value);
+            } else if (value instanceof Float) {
+                editor.putFloat(entry.getKey(), (Float) value);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(entry.getKey(), (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(entry.getKey(), (Long) value);
+            }
+        }
+        editor.commit();
+        super.tearDown();
+    }
+
+    public void testFollowsPreferences() throws Exception {
+        final Settings before = Settings.get(mContext);
+        String imperial = mContext.getString(R.string.pref_units_imperial);
+        mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_location_key), "94043")
+                .putString(mContext.getString(R.string.pref_units_key), imperial)
+                .putFloat(mContext.getString(R.string.pref_location_latitude), 37.4f)
+                .putFloat(mContext.getString(R.string.pref_location_longitude), -122.1f)
+                .commit();
+        waitForNewVersion(before);
+
+        Settings after = Settings.get(mContext);
+        assertTrue("Error: the version didn't go up", after.version > before.version);
+        assertEquals("94043", after.locationSetting);
+        assertEquals("94043", Utility.getPreferredLocation(mContext));
+        assertFalse(after.isMetric);
+        assertFalse(Utility.isMetric(mContext));
+        assertTrue(Utility.isLocationLatLonAvailable(mContext));
+        assertEquals(37.4f, Utility.getLocationLatitude(mContext));
+        assertEquals(-122.1f, Utility.getLocationLongitude(mContext));
+
+        // The snapshot we had before is left as it was
+        assertNotSame(before, after);
+    }
+
+    public void testArtPack() throws Exception {
+        final Settings before = Settings.get(mContext);
+        String otherPack = mContext.getString(R.string.pref_art_pack_sunshine) + "?other";
+        mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_art_pack_key), otherPack)
+                .commit();
+        waitForNewVersion(before);
+
+        assertEquals(otherPack, Utility.getArtPack(mContext));
+        assertFalse(Utility.usingLocalGraphics(mContext));
+    }
+
+    public void testUnrelatedChangeKeepsVersion() throws InterruptedException {
+        // Let the changes put back by an earlier tearDown() reach the listener first
+        Thread.sleep(500);
+        Settings before = Settings.get(mContext);
+        mPrefs.edit()
+                .putInt(mContext.getString(R.string.pref_location_status_key),
+                        mPrefs.getInt(mContext.getString(R.string.pref_location_status_key), 0) + 1)
+                .commit();
+        // Listeners are called on the main thread, give it the chance
+        Thread.sleep(500);
+        assertSame("Error: a setting the snapshot doesn't have made a new one",
+                before, Settings.get(mContext));
+    }
+
+    // Commits from the test thread reach the listener through the main thread
+    private void waitForNewVersion(final Settings before) throws Exception {
+        PollingCheck.check("Error: the settings were never updated", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return Settings.get(mContext).version != before.version;
+                    }
+                });
+    }
+}
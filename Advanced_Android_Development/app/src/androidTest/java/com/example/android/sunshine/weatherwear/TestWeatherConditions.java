@@ -0,0 +1,98 @@
+package com.example.android.sunshine.weatherwear;
+
+import android.test.AndroidTestCase;
+
+import com.example.WeatherConditions;
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.Utility;
+
+/*
+    Checks the Utility lookups, now done through the WeatherConditions tables, still give the
+    icon, art and description the old range checks did for every code from 0 to 999.
+ */
+public class TestWeatherConditions extends AndroidTestCase {
+
+    public void testIconsMatchOldChain() {
+        for (int code = 0; code <= WeatherConditions.MAX_CODE; code++) {
+            assertEquals("Error: wrong icon for " + code, oldIcon(code),
+                    Utility.getIconResourceForWeatherCondition(code));
+        }
+    }
+
+    public void testArtMatchesOldChain() {
+        for (int code = 0; code <= WeatherConditions.MAX_CODE; code++) {
+            assertEquals("Error: wrong art for " + code, oldArt(code),
+                    Utility.getArtResourceForWeatherCondition(code));
+        }
+    }
+
+    public void testEveryDescriptionKeyHasAString() {
+        for (int key : WeatherConditions.getDescriptionKeys()) {
+            String description = Utility.getStringForWeatherCondition(mContext, key);
+            assertFalse("Error: no string for " + key,
+                    description.equals(mContext.getString(R.string.condition_unknown, key)));
+        }
+        assertEquals(mContext.getString(R.string.condition_2xx),
+                Utility.getStringForWeatherCondition(mContext, 211));
+        assertEquals(mContext.getString(R.string.condition_3xx),
+                Utility.getStringForWeatherCondition(mContext, 310));
+        assertEquals(mContext.getString(R.string.condition_761),
+                Utility.getStringForWeatherCondition(mContext, 761));
+        assertEquals(mContext.getString(R.string.condition_unknown, 505),
+                Utility.getStringForWeatherCondition(mContext, 505));
+    }
+
+    private static int oldIcon(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    private static int oldArt(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.android.sunshine.weatherwear;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.Utility;
+import com.explore.archana.weatherwear.WeatherFormatter;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/*
+    Checks the cached formatting gives exactly what Utility used to, copied below as it was,
+    that a second pass over the same days formats nothing, and that a locale change is picked
+    up.  Also times formatting a 14 day list both ways.
+ */
+public class TestWeatherFormatter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWeatherFormatter.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int DAYS = 14;
+    private static final int BENCHMARK_PASSES = 200;
+
+    private Locale mDefaultLocale;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDefaultLocale = Locale.getDefault();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Locale.setDefault(mDefaultLocale);
+        super.tearDown();
+    }
+
+    public void testMatchesOldFormatting() {
+        long now = System.currentTimeMillis();
+        for (int day = -1; day < 30; day++) {
+            long date = now + day * DAY_IN_MILLIS;
+            assertEquals(oldFriendlyDayString(mContext, date, true),
+                    Utility.getFriendlyDayString(mContext, date, true));
+            assertEquals(oldFriendlyDayString(mContext, date, false),
+                    Utility.getFriendlyDayString(mContext, date, false));
+            assertEquals(oldFullFriendlyDayString(mContext, date),
+                    Utility.getFullFriendlyDayString(mContext, date));
+            assertEquals(oldDayName(mContext, date), Utility.getDayName(mContext, date));
+            assertEquals(oldMonthDay(date), Utility.getFormattedMonthDay(mContext, date));
+        }
+        for (double temperature = -40.5; temperature < 45; temperature += 0.7) {
+            assertEquals(oldTemperature(mContext, temperature, true),
+                    Utility.formatTemperature(mContext, temperature, true));
+            assertEquals(oldTemperature(mContext, temperature, false),
+                    Utility.formatTemperature(mContext, temperature, false));
+        }
+    }
+
+    public void testSecondPassFormatsNothing() {
+        WeatherFormatter formatter = WeatherFormatter.getInstance(mContext);
+        long now = System.currentTimeMillis();
+        int today = currentJulianDay();
+        formatList(now);
+        int misses = formatter.getLabelMisses();
+        formatList(now);
+        int newMisses = formatter.getLabelMisses() - misses;
+        if (currentJulianDay() != today) {
+            // the day rolled over in between, which rightly starts everything afresh
+            return;
+        }
+        assertEquals("Error: labels were formatted again", 0, newMisses);
+    }
+
+    public void testLocaleChangeIsPickedUp() {
+        long date = System.currentTimeMillis() + 10 * DAY_IN_MILLIS;
+        Locale.setDefault(Locale.US);
+        String english = Utility.getFriendlyDayString(mContext, date, false);
+        Locale.setDefault(Locale.FRANCE);
+        String french = Utility.getFriendlyDayString(mContext, date, false);
+        assertEquals(oldFriendlyDayString(mContext, date, false), french);
+        assertFalse("Error: still formatting in English", english.equals(french));
+    }
+
+    public void testFourteenDayListBenchmark() {
+        long now = System.currentTimeMillis();
+        formatList(now);
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            formatList(now);
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (int day = 0; day < DAYS; day++) {
+                long date = now + day * DAY_IN_MILLIS;
+                oldFriendlyDayString(mContext, date, day == 0);
+                oldTemperature(mContext, 20 + day, true);
+                oldTemperature(mContext, 10 + day, true);
+            }
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d day list: %.1f us cached, %.1f us the old way",
+                DAYS, cachedNanos / 1e3 / BENCHMARK_PASSES, oldNanos / 1e3 / BENCHMARK_PASSES));
+    }
+
+    private void formatList(long now) {
+        for (int day = 0; day < DAYS; day++) {
+            long date = now + day * DAY_IN_MILLIS;
+            Utility.getFriendlyDayString(mContext, date, day == 0);
+            Utility.formatTemperature(mContext, 20 + day, true);
+            Utility.formatTemperature(mContext, 10 + day, true);
+        }
+    }
+
+    private static int currentJulianDay() {
+        Time time = new Time();
+        time.setToNow();
+        return Time.getJulianDay(System.currentTimeMillis(), time.gmtoff);
+    }
+
+    // What Utility did before WeatherFormatter, less the unused locals
+
+    private static String oldTemperature(Context context, double temperature, boolean isMetric) {
+        if (!isMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(context.getString(R.string.format_temperature), temperature);
+    }
+
+    private static String oldFriendlyDayString(Context context, long dateInMillis,
+                                               boolean displayLongToday) {
+        Time time = new Time();
+        time.setToNow();
+        long currentTime = System.currentTimeMillis();
+        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
+        int currentJulianDay = Time.getJulianDay(currentTime, time.gmtoff);
+        if (displayLongToday && julianDay == currentJulianDay) {
+            String today = context.getString(R.string.today);
+            return String.format(context.getString(R.string.format_full_friendly_date,
+                    today, oldMonthDay(dateInMillis)));
+        } else if (julianDay < currentJulianDay + 7) {
+            return oldDayName(context, dateInMillis);
+        } else {
+            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
+            return shortenedDateFormat.format(dateInMillis);
+        }
+    }
+
+    private static String oldFullFriendlyDayString(Context context, long dateInMillis) {
+        return String.format(context.getString(R.string.format_full_friendly_date,
+                oldDayName(context, dateInMillis), oldMonthDay(dateInMillis)));
+    }
+
+    private static String oldDayName(Context context, long dateInMillis) {
+        Time t = new Time();
+        t.setToNow();
+        int julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
+        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), t.gmtoff);
+        if (julianDay == currentJulianDay) {
+            return context.getString(R.string.today);
+        } else if (julianDay == currentJulianDay + 1) {
+            return context.getString(R.string.tomorrow);
+        } else {
+            return new SimpleDateFormat("EEEE").format(dateInMillis);
+        }
+    }
+
+    private static String oldMonthDay(long dateInMillis) {
+        return new SimpleDateFormat("MMMM dd").format(dateInMillis);
+    }
+}
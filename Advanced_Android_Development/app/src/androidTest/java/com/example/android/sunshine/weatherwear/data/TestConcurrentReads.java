@@ -0,0 +1,187 @@
+package com.example.android.sunshine.weatherwear.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.data.WeatherDbHelper;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/*
+    Measures how long the forecast query takes while a large bulkInsert is running, to show
+    readers aren't stuck behind the writer's transaction now that the database uses
+    write-ahead logging.  Logs p50 and p99 query latency with and without the writer.
+
+    The reads go to the weather table itself, which the provider's query cache doesn't answer,
+    so every one of them reaches SQLite.
+ */
+public class TestConcurrentReads extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestConcurrentReads.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int FORECAST_DAYS = 14;
+    private static final int WRITER_LOCATIONS = 50;
+    private static final int WRITER_DAYS_PER_LOCATION = 1000;
+    private static final int IDLE_READS = 300;
+
+    private long mLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createWeatherValues(mLocationRowId, FORECAST_DAYS));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testWriteAheadLoggingEnabled() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        Cursor cursor = db.rawQuery("PRAGMA journal_mode", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("wal", cursor.getString(0).toLowerCase(Locale.US));
+        cursor.close();
+        db.close();
+    }
+
+    public void testReaderLatencyUnderConcurrentWriter() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        final Uri forecastUri = WeatherContract.WeatherEntry.CONTENT_URI;
+        int cacheHitsBefore = getCacheHitCount();
+
+        // warm up, then the baseline with nobody writing
+        readForecast(forecastUri, 50);
+        long[] idle = readForecast(forecastUri, IDLE_READS);
+
+        // The writer gets its own locations, so the rows being read never change under us.
+        final ContentValues[] batch = createWriterBatch();
+        final CountDownLatch writerStarted = new CountDownLatch(1);
+        final long[] writerNanos = new long[1];
+        Thread writer = new Thread("BulkInsertWriter") {
+            @Override
+            public void run() {
+                writerStarted.countDown();
+                long start = System.nanoTime();
+                mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, batch);
+                writerNanos[0] = System.nanoTime() - start;
+            }
+        };
+        writer.start();
+        writerStarted.await();
+
+        long[] busy = new long[IDLE_READS * 100];
+        int reads = 0;
+        while (writer.isAlive() && reads < busy.length) {
+            long start = System.nanoTime();
+            assertEquals(FORECAST_DAYS, countRows(forecastUri));
+            busy[reads++] = System.nanoTime() - start;
+        }
+        writer.join();
+        busy = Arrays.copyOf(busy, reads);
+        assertTrue("Error: the writer finished before any read overlapped it", reads > 0);
+
+        assertEquals("Error: the reads were answered from the query cache, not the database",
+                cacheHitsBefore, getCacheHitCount());
+
+        Arrays.sort(idle);
+        Arrays.sort(busy);
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "idle: p50 %.2f ms, p99 %.2f ms; during a %d row bulkInsert (%d ms): " +
+                        "%d reads, p50 %.2f ms, p99 %.2f ms",
+                percentile(idle, 50) / 1e6, percentile(idle, 99) / 1e6,
+                batch.length, writerNanos[0] / 1000000, reads,
+                percentile(busy, 50) / 1e6, percentile(busy, 99) / 1e6));
+
+        // Behind a rollback journal, a read that starts during the insert waits for all of it.
+        assertTrue("Error: readers look blocked behind the writer's transaction",
+                percentile(busy, 99) < writerNanos[0] / 4);
+    }
+
+    private long[] readForecast(Uri forecastUri, int count) {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            assertEquals(FORECAST_DAYS, countRows(forecastUri));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    // The forecast the list, widgets and Muzei show, read straight from the weather table
+    private int countRows(Uri forecastUri) {
+        Cursor cursor = mContext.getContentResolver().query(forecastUri, null,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(mLocationRowId), Long.toString(TestUtilities.TEST_DATE)},
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        int count = 0;
+        while (cursor.moveToNext()) {
+            count++;
+        }
+        cursor.close();
+        return count;
+    }
+
+    private int getCacheHitCount() {
+        Bundle stats = mContext.getContentResolver().call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_QUERY_CACHE_STATS, null, null);
+        return stats.getInt(WeatherContract.RESULT_CACHE_HITS);
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private ContentValues[] createWriterBatch() {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        ContentValues[] batch = new ContentValues[WRITER_LOCATIONS * WRITER_DAYS_PER_LOCATION];
+        for (int i = 0; i < WRITER_LOCATIONS; i++) {
+            ContentValues location = TestUtilities.createNorthPoleLocationValues();
+            location.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                    TestUtilities.TEST_LOCATION + "-writer-" + i);
+            long locationRowId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, location);
+            assertTrue(locationRowId != -1);
+            System.arraycopy(createWeatherValues(locationRowId, WRITER_DAYS_PER_LOCATION), 0,
+                    batch, i * WRITER_DAYS_PER_LOCATION, WRITER_DAYS_PER_LOCATION);
+        }
+        db.close();
+        return batch;
+    }
+
+    private static ContentValues[] createWeatherValues(long locationRowId, int days) {
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            values[i] = TestUtilities.createWeatherValues(locationRowId);
+            values[i].put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    TestUtilities.TEST_DATE + i * DAY_IN_MILLIS);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.android.sunshine.weatherwear.data;
+
+import android.app.NotificationManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.weatherwear.utils.PollingCheck;
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.Settings;
+import com.explore.archana.weatherwear.WearPublisher;
+import com.explore.archana.weatherwear.data.ForecastSnapshot;
+import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.muzei.WeatherMuzeiSource;
+import com.explore.archana.weatherwear.sync.WeatherNotifier;
+import com.explore.archana.weatherwear.widget.DetailWidgetRemoteViewsService;
+import com.explore.archana.weatherwear.widget.TodayWidgetIntentService;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/*
+    Checks that everything that runs after a sync (widgets, Muzei, the notification and the
+    watch face) shares the one snapshot the sync loads, rather than each querying again, by
+    running them and counting the queries the provider answers.
+ */
+public class TestForecastSnapshot extends AndroidTestCase {
+
+    private static final int DAYS = 3;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private String mSavedLocation;
+    private Map<String, ?> mSavedPrefs;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String locationKey = mContext.getString(R.string.pref_location_key);
+        mSavedLocation = prefs.getString(locationKey, null);
+        mSavedPrefs = prefs.getAll();
+        setLocation(TestUtilities.TEST_LOCATION);
+
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] days = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            days[i] = TestUtilities.createWeatherValues(locationRowId);
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_DATE, today + i * 24L * 60 * 60 * 1000);
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 75 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, days);
+        ForecastSnapshot.invalidate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        setLocation(mSavedLocation);
+        restoreNotificationPrefs();
+        ((NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE)).cancelAll();
+        ForecastSnapshot.invalidate();
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    /**
+     * Commits the location, or removes it if null, and waits for the Settings snapshot to
+     * have it.  The listener that updates Settings runs on the main thread, not this one.
+     */
+    private void setLocation(String location) throws Exception {
+        String locationKey = mContext.getString(R.string.pref_location_key);
+        SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        if (location != null) {
+            editor.putString(locationKey, location);
+        } else {
+            editor.remove(locationKey);
+        }
+        editor.commit();
+
+        final String expected = location != null
+                ? location : mContext.getString(R.string.pref_location_default);
+        PollingCheck.check("Error: the settings never got the new location", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return expected.equals(Settings.get(mContext).locationSetting);
+                    }
+                });
+    }
+
+    private void restoreNotificationPrefs() {
+        String enabledKey = mContext.getString(R.string.pref_enable_notifications_key);
+        String lastKey = mContext.getString(R.string.pref_last_notification);
+        SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        if (mSavedPrefs.containsKey(enabledKey)) {
+            editor.putBoolean(enabledKey, (Boolean) mSavedPrefs.get(enabledKey));
+        } else {
+            editor.remove(enabledKey);
+        }
+        if (mSavedPrefs.containsKey(lastKey)) {
+            editor.putLong(lastKey, (Long) mSavedPrefs.get(lastKey));
+        } else {
+            editor.remove(lastKey);
+        }
+        editor.commit();
+    }
+
+    private int getProviderQueryCount() {
+        Bundle stats = mContext.getContentResolver().call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_QUERY_CACHE_STATS, null, null);
+        return stats.getInt(WeatherContract.RESULT_QUERY_COUNT);
+    }
+
+    // The consumers are services, run here on this thread with the test's context so it's
+    // known they've finished.
+
+    static class TodayWidgetProbe extends TodayWidgetIntentService {
+        void run(Context context) {
+            attachBaseContext(context);
+            onHandleIntent(new Intent());
+        }
+    }
+
+    static class DetailWidgetProbe extends DetailWidgetRemoteViewsService {
+        // returns how many rows the widget would show
+        int run(Context context) {
+            attachBaseContext(context);
+            RemoteViewsFactory factory = onGetViewFactory(new Intent());
+            factory.onCreate();
+            factory.onDataSetChanged();
+            int count = factory.getCount();
+            for (int i = 0; i < count; i++) {
+                factory.getViewAt(i);
+            }
+            factory.onDestroy();
+            return count;
+        }
+    }
+
+    static class MuzeiProbe extends WeatherMuzeiSource {
+        void run(Context context) {
+            attachBaseContext(context);
+            onCreate();
+            onUpdate(UPDATE_REASON_OTHER);
+            onDestroy();
+        }
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testOneQueryPerSync() throws Exception {
+        // Let the notifier post, so it gets as far as reading the forecast
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        prefs.edit()
+                .putBoolean(mContext.getString(R.string.pref_enable_notifications_key), true)
+                .putLong(mContext.getString(R.string.pref_last_notification), 0)
+                .commit();
+        final WeatherNotifier notifier = WeatherNotifier.getInstance(mContext);
+        final int notifiesBefore = notifier.getNotifyCount();
+        int queriesBefore = getProviderQueryCount();
+
+        // What the sync adapter does once it has written the new forecast...
+        ForecastSnapshot.refresh(mContext);
+
+        // ...and then everything it wakes up
+        new TodayWidgetProbe().run(mContext);
+        assertEquals("Error: the detail widget didn't get the forecast",
+                DAYS, new DetailWidgetProbe().run(mContext));
+        new MuzeiProbe().run(mContext);
+        WearPublisher.getInstance(mContext).publish(mContext);
+        notifier.onForecastWritten();
+        PollingCheck.check("Error: the notification was never posted", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return notifier.getNotifyCount() > notifiesBefore;
+                    }
+                });
+
+        assertEquals("Error: a sync and its consumers should cost exactly one provider query",
+                1, getProviderQueryCount() - queriesBefore);
+    }
+
+    public void testSnapshotContents() {
+        ForecastSnapshot snapshot = ForecastSnapshot.refresh(mContext);
+
+        assertEquals(TestUtilities.TEST_LOCATION, snapshot.locationSetting);
+        assertEquals("North Pole", snapshot.cityName);
+        assertEquals(DAYS, snapshot.days.size());
+        assertNotNull("Error: today's forecast is missing from the snapshot", snapshot.getToday());
+        assertEquals(321, snapshot.getToday().weatherId);
+        assertEquals("Asteroids", snapshot.getToday().shortDesc);
+        for (int i = 0; i < DAYS; i++) {
+            assertEquals(75.0 + i, snapshot.days.get(i).maxTemp);
+        }
+    }
+
+    public void testInvalidateAndLocationChangeReload() throws Exception {
+        ForecastSnapshot first = ForecastSnapshot.refresh(mContext);
+        int queriesBefore = ForecastSnapshot.getQueryCount();
+
+        ForecastSnapshot.invalidate();
+        ForecastSnapshot second = ForecastSnapshot.get(mContext);
+        assertNotSame(first, second);
+        assertEquals(1, ForecastSnapshot.getQueryCount() - queriesBefore);
+
+        setLocation("elsewhere");
+        ForecastSnapshot third = ForecastSnapshot.get(mContext);
+        assertEquals("elsewhere", third.locationSetting);
+        assertNull(third.getFirstDay());
+        assertEquals(2, ForecastSnapshot.getQueryCount() - queriesBefore);
+    }
+}
@@ -16,6 +16,8 @@
 package com.example.android.sunshine.weatherwear.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.pm.PackageManager;
@@ -31,6 +33,8 @@ import com.explore.archana.weatherwear.data.WeatherContract;
 import com.explore.archana.weatherwear.data.WeatherDbHelper;
 import com.explore.archana.weatherwear.data.WeatherProvider;
 
+import java.util.ArrayList;
+
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
     that at least the basic functionality has been implemented correctly.
@@ -513,4 +517,175 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // Checks that upserting weather rows only writes what changed, and reports it.
+    public void testUpsertWeather() throws Exception {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(WeatherContract.LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues[] weatherValues = createBulkInsertWeatherValues(locationRowId);
+        String[] results = upsert(weatherValues);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, count(results, WeatherContract.RESULT_INSERTED));
+
+        // The same values again shouldn't write anything.
+        results = upsert(createBulkInsertWeatherValues(locationRowId));
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, count(results, WeatherContract.RESULT_UNCHANGED));
+
+        // Change two days and make sure only those get rewritten.
+        weatherValues = createBulkInsertWeatherValues(locationRowId);
+        weatherValues[2].put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 99.5);
+        weatherValues[7].put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Meteors");
+        results = upsert(weatherValues);
+        assertEquals(WeatherContract.RESULT_UPDATED, results[2]);
+        assertEquals(WeatherContract.RESULT_UPDATED, results[7]);
+        assertEquals(0, count(results, WeatherContract.RESULT_INSERTED));
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT - 2, count(results, WeatherContract.RESULT_UNCHANGED));
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToFirst();
+        for ( int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++, cursor.moveToNext() ) {
+            TestUtilities.validateCurrentRecord("testUpsertWeather.  Error validating WeatherEntry " + i,
+                    cursor, weatherValues[i]);
+        }
+        cursor.close();
+    }
+
+    // The sync adapter writes its locations, forecasts and pruning as one batch.  It should
+    // land in one transaction with one notification, and skip rows that didn't change.
+    public void testApplyBatchUpsert() throws Exception {
+        TestUtilities.TestContentObserver observer = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.BASE_CONTENT_URI, true, observer);
+
+        ContentProviderResult[] results = mContext.getContentResolver().applyBatch(
+                WeatherContract.CONTENT_AUTHORITY, createSyncBatch());
+        observer.waitForNotificationOrFail();
+        // give any stray notifications time to arrive
+        Thread.sleep(500);
+        assertEquals("Error: a batch should notify observers once", 1, observer.mChangeCount);
+        mContext.getContentResolver().unregisterContentObserver(observer);
+
+        assertEquals(WeatherContract.RESULT_INSERTED,
+                WeatherContract.getUpsertResultFromUri(results[0].uri));
+        long locationRowId = ContentUris.parseId(results[0].uri);
+        for (int i = 1; i <= BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            assertEquals(WeatherContract.RESULT_INSERTED,
+                    WeatherContract.getUpsertResultFromUri(results[i].uri));
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        ContentValues[] expected = createBulkInsertWeatherValues(locationRowId);
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            cursor.moveToNext();
+            TestUtilities.validateCurrentRecord("testApplyBatchUpsert.  Error validating WeatherEntry " + i,
+                    cursor, expected[i]);
+        }
+        cursor.close();
+
+        // The same batch again finds the location and every row as they were.
+        observer = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.BASE_CONTENT_URI, true, observer);
+        results = mContext.getContentResolver().applyBatch(
+                WeatherContract.CONTENT_AUTHORITY, createSyncBatch());
+        for (int i = 0; i <= BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            assertEquals(WeatherContract.RESULT_UNCHANGED,
+                    WeatherContract.getUpsertResultFromUri(results[i].uri));
+        }
+        Thread.sleep(500);
+        assertEquals("Error: an unchanged batch shouldn't notify anyone", 0, observer.mChangeCount);
+        mContext.getContentResolver().unregisterContentObserver(observer);
+        observer.mHT.quit();
+    }
+
+    // If any operation fails, none of the batch should be visible.
+    public void testApplyBatchIsAtomic() throws Exception {
+        ArrayList<ContentProviderOperation> operations = createSyncBatch();
+        ContentValues broken = createBulkInsertWeatherValues(0)[0];
+        broken.remove(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC);
+        broken.put(WeatherContract.WeatherEntry.COLUMN_DATE, TestUtilities.TEST_DATE - 1000);
+        operations.add(operations.size() - 1, ContentProviderOperation.newInsert(
+                WeatherContract.buildUpsertUri(WeatherContract.WeatherEntry.CONTENT_URI))
+                .withValues(broken)
+                .withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, 0)
+                .build());
+
+        try {
+            mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            fail("Error: a row missing a NOT NULL column should fail the batch");
+        } catch (android.database.SQLException e) {
+            // expected
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherContract.LocationEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: the location of a failed batch was committed", 0, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(WeatherContract.WeatherEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: rows of a failed batch were committed", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    // A location upsert, its forecast with the location id back-referenced, and a prune of
+    // days before the forecast, the way SunshineSyncAdapter builds it.
+    private ArrayList<ContentProviderOperation> createSyncBatch() {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(
+                WeatherContract.buildUpsertUri(WeatherContract.LocationEntry.CONTENT_URI))
+                .withValues(TestUtilities.createNorthPoleLocationValues())
+                .build());
+        for (ContentValues weatherValues : createBulkInsertWeatherValues(0)) {
+            weatherValues.remove(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+            operations.add(ContentProviderOperation.newInsert(
+                    WeatherContract.buildUpsertUri(WeatherContract.WeatherEntry.CONTENT_URI))
+                    .withValues(weatherValues)
+                    .withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, 0)
+                    .build());
+        }
+        operations.add(ContentProviderOperation.newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                        new String[]{Long.toString(TestUtilities.TEST_DATE)})
+                .build());
+        return operations;
+    }
+
+    // Writes the rows the way the sync adapter does, as upsert inserts in one batch, and
+    // returns what happened to each of them.
+    private String[] upsert(ContentValues[] values) throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        for (ContentValues value : values) {
+            operations.add(ContentProviderOperation.newInsert(
+                    WeatherContract.buildUpsertUri(WeatherContract.WeatherEntry.CONTENT_URI))
+                    .withValues(value)
+                    .build());
+        }
+        ContentProviderResult[] applied = mContext.getContentResolver().applyBatch(
+                WeatherContract.CONTENT_AUTHORITY, operations);
+        String[] results = new String[applied.length];
+        for (int i = 0; i < applied.length; i++) {
+            results[i] = WeatherContract.getUpsertResultFromUri(applied[i].uri);
+        }
+        return results;
+    }
+
+    private static int count(String[] results, String result) {
+        int count = 0;
+        for (String r : results) {
+            if (result.equals(r)) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
@@ -0,0 +1,152 @@
+package com.example.android.sunshine.weatherwear.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.data.WeatherDbHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+    Runs EXPLAIN QUERY PLAN on the provider's hot statements, so a schema change that makes
+    SQLite fall back to scanning the weather table fails here instead of slowing down quietly.
+    Also checks the upgrade from version 2 keeps the stored weather.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    // The same join WeatherProvider's sWeatherByLocationSettingQueryBuilder runs, with the
+    // columns the forecast list asks for.
+    private static final String FORECAST_BY_LOCATION_AND_START_DATE =
+            "SELECT " +
+                    WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID + ", " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + ", " +
+                    WeatherContract.WeatherEntry.COLUMN_SHORT_DESC + ", " +
+                    WeatherContract.WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                    WeatherContract.WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                    WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + ", " +
+                    WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                    WeatherContract.LocationEntry.COLUMN_COORD_LAT + ", " +
+                    WeatherContract.LocationEntry.COLUMN_COORD_LONG +
+                    " FROM " + WeatherContract.WeatherEntry.TABLE_NAME + " INNER JOIN " +
+                    WeatherContract.LocationEntry.TABLE_NAME +
+                    " ON " + WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY +
+                    " = " + WeatherContract.LocationEntry.TABLE_NAME +
+                    "." + WeatherContract.LocationEntry._ID +
+                    " WHERE " + WeatherContract.LocationEntry.TABLE_NAME +
+                    "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? " +
+                    " ORDER BY " + WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+
+    // The sync adapter's history prune
+    private static final String PRUNE_HISTORY =
+            "DELETE FROM " + WeatherContract.WeatherEntry.TABLE_NAME +
+                    " WHERE " + WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?";
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDb = new WeatherDbHelper(mContext).getWritableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    public void testForecastQueryUsesCoveringIndex() {
+        List<String> plan = explain(FORECAST_BY_LOCATION_AND_START_DATE,
+                TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE));
+
+        assertNoTableScan(plan, WeatherContract.WeatherEntry.TABLE_NAME);
+        assertNoTableScan(plan, WeatherContract.LocationEntry.TABLE_NAME);
+        assertTrue("Error: the forecast query should read weather from the covering index: " + plan,
+                containsStep(plan, "COVERING INDEX " + WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE));
+        assertFalse("Error: the forecast query shouldn't need a sort: " + plan,
+                containsStep(plan, "TEMP B-TREE"));
+    }
+
+    public void testHistoryPruneUsesIndex() {
+        List<String> plan = explain(PRUNE_HISTORY, Long.toString(TestUtilities.TEST_DATE));
+
+        assertNoTableScan(plan, WeatherContract.WeatherEntry.TABLE_NAME);
+        assertTrue("Error: the prune should search weather by date through an index: " + plan,
+                containsStep(plan, "INDEX"));
+    }
+
+    public void testUpgradeFromVersion2KeepsWeather() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            // A version 2 database is today's schema without the index
+            dbHelper.onCreate(db);
+            db.execSQL("DROP INDEX " + WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE);
+            long locationRowId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null,
+                    TestUtilities.createNorthPoleLocationValues());
+            ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+            assertTrue(db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, weatherValues) != -1);
+
+            dbHelper.onUpgrade(db, 2, 3);
+
+            Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME, null, null, null,
+                    null, null, null);
+            TestUtilities.validateCursor("Error: the upgrade lost the stored weather",
+                    cursor, weatherValues);
+            cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                    new String[]{WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE});
+            assertTrue("Error: the upgrade didn't create the index", cursor.moveToFirst());
+            cursor.close();
+        } finally {
+            db.close();
+        }
+    }
+
+    private List<String> explain(String sql, String... args) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        List<String> plan = new ArrayList<String>();
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detailIndex).toUpperCase(Locale.US));
+            }
+        } finally {
+            cursor.close();
+        }
+        Log.d(LOG_TAG, sql + " -> " + plan);
+        return plan;
+    }
+
+    // A scan reads every row of the table, or of one of its indexes.  Older SQLite writes
+    // "SCAN TABLE weather", newer "SCAN weather"; a lookup through an index says "SEARCH".
+    private static void assertNoTableScan(List<String> plan, String table) {
+        String upperTable = table.toUpperCase(Locale.US);
+        for (String step : plan) {
+            assertFalse("Error: full scan of " + table + ": " + plan,
+                    step.startsWith("SCAN TABLE " + upperTable + " ")
+                            || step.equals("SCAN TABLE " + upperTable)
+                            || step.startsWith("SCAN " + upperTable + " ")
+                            || step.equals("SCAN " + upperTable));
+        }
+    }
+
+    private static boolean containsStep(List<String> plan, String text) {
+        String upperText = text.toUpperCase(Locale.US);
+        for (String step : plan) {
+            if (step.contains(upperText)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.android.sunshine.weatherwear.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.data.DateNormalizer;
+import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.data.WeatherDbHelper;
+
+import java.util.Locale;
+
+/*
+    Checks the compiled-statement bulk insert writes the same rows the per-row db.insert() loop
+    did, and logs rows per second for both on 14, 1,000 and 100,000 row batches.
+ */
+public class TestWeatherBulkInsert extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWeatherBulkInsert.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    // Big batches are spread over several locations, so the dates stay well inside the range
+    // android.text.format.Time handles.
+    private static final int DAYS_PER_LOCATION = 1000;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testDateNormalizerMatchesContract() {
+        DateNormalizer normalizer = new DateNormalizer();
+        // every 37 minutes for two years, which crosses both daylight saving changes twice
+        long start = TestUtilities.TEST_DATE * 1000;
+        for (long date = start; date < start + 730 * DAY_IN_MILLIS; date += 37 * 60 * 1000) {
+            assertEquals("Error: normalized dates differ for " + date,
+                    WeatherContract.normalizeDate(date), normalizer.normalize(date));
+        }
+    }
+
+    public void testBulkInsertMatchesRowByRowInsert() {
+        long[] locationIds = insertLocations(1);
+        ContentValues[] values = createWeatherValues(locationIds, 14);
+        // an hour into each day, so the provider has something to normalize
+        for (ContentValues value : values) {
+            value.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE) + 60 * 60 * 1000);
+        }
+
+        int inserted = mContext.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, values);
+        assertEquals(values.length, inserted);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI, null, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(values.length, cursor.getCount());
+        for (ContentValues value : values) {
+            cursor.moveToNext();
+            ContentValues expected = new ContentValues(value);
+            expected.put(WeatherContract.WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(
+                    value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE)));
+            TestUtilities.validateCurrentRecord("Error: bulk inserted row differs", cursor, expected);
+        }
+        cursor.close();
+    }
+
+    public void testBulkInsertSkipsInvalidRows() {
+        long[] locationIds = insertLocations(1);
+        ContentValues[] values = createWeatherValues(locationIds, 3);
+        values[1].remove(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC);
+
+        int inserted = mContext.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, values);
+        assertEquals("Error: a row missing a NOT NULL column should be skipped", 2, inserted);
+    }
+
+    public void testBulkInsertBenchmark() {
+        benchmark(14);
+        benchmark(1000);
+        benchmark(100000);
+    }
+
+    private void benchmark(int rows) {
+        int locations = (rows + DAYS_PER_LOCATION - 1) / DAYS_PER_LOCATION;
+
+        deleteAllRecords();
+        ContentValues[] values = createWeatherValues(insertLocations(locations), rows);
+        long start = System.nanoTime();
+        insertRowByRow(values);
+        long rowByRowNanos = System.nanoTime() - start;
+
+        deleteAllRecords();
+        values = createWeatherValues(insertLocations(locations), rows);
+        start = System.nanoTime();
+        int inserted = mContext.getContentResolver().bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI, values);
+        long compiledNanos = System.nanoTime() - start;
+        assertEquals(rows, inserted);
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d rows: db.insert() %.0f rows/s, compiled statement %.0f rows/s",
+                rows, rows * 1e9 / rowByRowNanos, rows * 1e9 / compiledNanos));
+    }
+
+    // How WeatherProvider.bulkInsert() used to write weather rows.
+    private void insertRowByRow(ContentValues[] values) {
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                long dateValue = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                value.put(WeatherContract.WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(dateValue));
+                assertTrue(db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value) != -1);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.close();
+    }
+
+    private long[] insertLocations(int count) {
+        ContentValues[] locations = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            locations[i] = TestUtilities.createNorthPoleLocationValues();
+            locations[i].put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+                    TestUtilities.TEST_LOCATION + "-" + i);
+        }
+        long[] locationIds = new long[count];
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        for (int i = 0; i < count; i++) {
+            locationIds[i] = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, locations[i]);
+            assertTrue(locationIds[i] != -1);
+        }
+        db.close();
+        return locationIds;
+    }
+
+    private static ContentValues[] createWeatherValues(long[] locationIds, int rows) {
+        long firstDay = WeatherContract.normalizeDate(TestUtilities.TEST_DATE * 1000);
+        ContentValues[] values = new ContentValues[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = TestUtilities.createWeatherValues(locationIds[i / DAYS_PER_LOCATION]);
+            values[i].put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    firstDay + (i % DAYS_PER_LOCATION) * DAY_IN_MILLIS);
+            values[i].put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 75 + i % 10);
+        }
+        return values;
+    }
+}
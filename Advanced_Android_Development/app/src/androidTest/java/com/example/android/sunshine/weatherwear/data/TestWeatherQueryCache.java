@@ -0,0 +1,168 @@
+package com.example.android.sunshine.weatherwear.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import com.explore.archana.weatherwear.data.WeatherContract;
+
+/*
+    Checks WeatherProvider answers repeated weather-by-location queries from its cache, and
+    that a write only drops the cached results of the locations it touched.
+ */
+public class TestWeatherQueryCache extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    private static final String OTHER_LOCATION = TestUtilities.TEST_LOCATION + "-other";
+
+    private long mLocationRowId;
+    private long mOtherLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues otherLocation = TestUtilities.createNorthPoleLocationValues();
+        otherLocation.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, OTHER_LOCATION);
+        Uri otherUri = mContext.getContentResolver().insert(
+                WeatherContract.LocationEntry.CONTENT_URI, otherLocation);
+        mOtherLocationRowId = Long.parseLong(otherUri.getLastPathSegment());
+
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createWeatherValues(mLocationRowId, 0, 3));
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createWeatherValues(mOtherLocationRowId, 0, 3));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testRepeatedQueryIsAHit() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        Uri uri = WeatherContract.WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+
+        int[] before = getStats();
+        Cursor first = query(uri);
+        Cursor second = query(uri);
+        int[] after = getStats();
+
+        assertEquals("Error: the first query should miss", 1, after[1] - before[1]);
+        assertEquals("Error: the repeated query should hit", 1, after[0] - before[0]);
+        assertEquals(3, first.getCount());
+        assertEquals(first.getCount(), second.getCount());
+        while (first.moveToNext()) {
+            second.moveToNext();
+            for (int i = 0; i < first.getColumnCount(); i++) {
+                assertEquals("Error: the cached row differs in " + first.getColumnName(i),
+                        first.getString(i), second.getString(i));
+            }
+        }
+        first.close();
+        second.close();
+    }
+
+    public void testBulkInsertOnlyInvalidatesItsLocation() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        Uri uri = WeatherContract.WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+        Uri otherUri = WeatherContract.WeatherEntry.buildWeatherLocation(OTHER_LOCATION);
+        query(uri).close();
+        query(otherUri).close();
+
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                createWeatherValues(mLocationRowId, 3, 1));
+
+        int[] before = getStats();
+        Cursor cursor = query(uri);
+        assertEquals("Error: the cache returned the rows from before the insert", 4, cursor.getCount());
+        cursor.close();
+        query(otherUri).close();
+        int[] after = getStats();
+
+        assertEquals("Error: the written location should miss", 1, after[1] - before[1]);
+        assertEquals("Error: the other location should still hit", 1, after[0] - before[0]);
+    }
+
+    public void testDeleteInvalidatesAffectedLocation() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        Uri uri = WeatherContract.WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+        Uri otherUri = WeatherContract.WeatherEntry.buildWeatherLocation(OTHER_LOCATION);
+        query(uri).close();
+        query(otherUri).close();
+
+        // Like the sync adapter's prune, but only of one location's first day
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[]{Long.toString(mLocationRowId), Long.toString(firstDay())});
+
+        int[] before = getStats();
+        Cursor cursor = query(uri);
+        assertEquals("Error: the cache returned the rows from before the delete", 2, cursor.getCount());
+        cursor.close();
+        query(otherUri).close();
+        int[] after = getStats();
+
+        assertEquals(1, after[1] - before[1]);
+        assertEquals(1, after[0] - before[0]);
+    }
+
+    public void testLocationDeleteInvalidatesEverything() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        Uri uri = WeatherContract.WeatherEntry.buildWeatherLocation(TestUtilities.TEST_LOCATION);
+        query(uri).close();
+
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+
+        Cursor cursor = query(uri);
+        assertEquals("Error: the cache returned rows of a deleted location", 0, cursor.getCount());
+        cursor.close();
+    }
+
+    private Cursor query(Uri uri) {
+        return mContext.getContentResolver().query(uri, null, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+    }
+
+    // {hits, misses}
+    private int[] getStats() {
+        Bundle stats = mContext.getContentResolver().call(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_QUERY_CACHE_STATS, null, null);
+        return new int[]{stats.getInt(WeatherContract.RESULT_CACHE_HITS),
+                stats.getInt(WeatherContract.RESULT_CACHE_MISSES)};
+    }
+
+    private static long firstDay() {
+        return WeatherContract.normalizeDate(TestUtilities.TEST_DATE * 1000);
+    }
+
+    private static ContentValues[] createWeatherValues(long locationRowId, int firstDayOffset, int days) {
+        ContentValues[] values = new ContentValues[days];
+        for (int i = 0; i < days; i++) {
+            values[i] = TestUtilities.createWeatherValues(locationRowId);
+            values[i].put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    firstDay() + (firstDayOffset + i) * DAY_IN_MILLIS);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.android.sunshine.weatherwear.sync;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.weatherwear.utils.PollingCheck;
+import com.explore.archana.weatherwear.Utility;
+import com.explore.archana.weatherwear.sync.ArtPrefetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Checks the art prefetch asks for each bucket's picture once, never runs more downloads at
+    a time than it's allowed or queues one that's still going, and counts how many of the
+    pictures the surfaces load had to be fetched.  Every test has its own prefetcher, so the
+    app's is left alone.
+ */
+public class TestArtPrefetcher extends AndroidTestCase {
+
+    private static final String ART_PACK = "http://example.com/art_%s.png";
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final int MAX_CONCURRENT = 2;
+
+    // Two weeks of weather, several days of it sharing a bucket
+    private static final int[] FORTNIGHT = {
+            300, 500, 501, 502, 800, 803, 804, 800, 211, 600, 601, 701, 801, 500
+    };
+    // light rain, rain, clear, clouds, storm, snow, fog, light clouds
+    private static final int FORTNIGHT_BUCKETS = 8;
+
+    private BlockingDownloader mDownloader;
+    private ArtPrefetcher mPrefetcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDownloader = new BlockingDownloader();
+        mPrefetcher = new ArtPrefetcher(mDownloader, MAX_CONCURRENT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDownloader.release.countDown();
+        super.tearDown();
+    }
+
+    public void testOneDownloadPerBucket() throws Exception {
+        mDownloader.release.countDown();
+        assertEquals(FORTNIGHT_BUCKETS, mPrefetcher.prefetch(ART_PACK, FORTNIGHT));
+        waitForDownloads(FORTNIGHT_BUCKETS);
+
+        List<String> urls = mDownloader.getUrls();
+        assertEquals(FORTNIGHT_BUCKETS, urls.size());
+        assertTrue(urls.contains(Utility.getArtUrlForWeatherCondition(ART_PACK, 502)));
+
+        // The next sync asks again, whether it's still cached is up to Glide
+        assertEquals(FORTNIGHT_BUCKETS, mPrefetcher.prefetch(ART_PACK, FORTNIGHT));
+        waitForDownloads(FORTNIGHT_BUCKETS * 2);
+    }
+
+    public void testConcurrencyAndInFlight() throws Exception {
+        assertEquals(FORTNIGHT_BUCKETS, mPrefetcher.prefetch(ART_PACK, FORTNIGHT));
+        // A second sync while the downloads are still going doesn't queue them again
+        assertEquals(0, mPrefetcher.prefetch(ART_PACK, FORTNIGHT));
+
+        PollingCheck.check("Error: the downloads never started", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mDownloader.getRunning() == MAX_CONCURRENT;
+                    }
+                });
+        mDownloader.release.countDown();
+        waitForDownloads(FORTNIGHT_BUCKETS);
+        assertEquals(MAX_CONCURRENT, mDownloader.getMostRunning());
+        assertEquals(FORTNIGHT_BUCKETS, mDownloader.getUrls().size());
+    }
+
+    public void testHitRate() throws Exception {
+        final String rain = Utility.getArtUrlForWeatherCondition(ART_PACK, 501);
+        final String clear = Utility.getArtUrlForWeatherCondition(ART_PACK, 800);
+        assertEquals(-1f, mPrefetcher.getHitRate());
+
+        // Glide fetching a picture for the prefetch isn't a miss
+        mPrefetcher.prefetch(ART_PACK, new int[]{500});
+        mPrefetcher.recordFetch(rain);
+        mDownloader.release.countDown();
+        waitForDownloads(1);
+        assertEquals(1, mPrefetcher.getPrefetchFetchCount());
+
+        mPrefetcher.recordUse(rain);
+        mPrefetcher.recordUse(rain);
+        mPrefetcher.recordUse(rain);
+        mPrefetcher.recordUse(clear);
+        // Only the picture that wasn't prefetched had to be fetched for the surfaces
+        mPrefetcher.recordFetch(clear);
+        assertEquals(4, mPrefetcher.getUseCount());
+        assertEquals(1, mPrefetcher.getUseFetchCount());
+        assertEquals(0.75f, mPrefetcher.getHitRate());
+    }
+
+    public void testFailedDownloadTriedAgain() throws Exception {
+        mDownloader.fail = true;
+        mDownloader.release.countDown();
+        mPrefetcher.prefetch(ART_PACK, new int[]{800});
+        PollingCheck.check("Error: the failure was never counted", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mPrefetcher.getFailedCount() == 1;
+                    }
+                });
+        assertEquals(0, mPrefetcher.getDownloadCount());
+        assertEquals(1, mPrefetcher.prefetch(ART_PACK, new int[]{800}));
+    }
+
+    private void waitForDownloads(final int count) throws Exception {
+        PollingCheck.check("Error: the downloads never finished", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mPrefetcher.getDownloadCount() == count;
+                    }
+                });
+    }
+
+    // Holds every download until released, keeping track of how many run at once
+    static class BlockingDownloader implements ArtPrefetcher.Downloader {
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean fail;
+        private final List<String> mUrls = new ArrayList<String>();
+        private int mRunning;
+        private int mMostRunning;
+
+        @Override
+        public boolean download(String url) {
+            synchronized (this) {
+                mUrls.add(url);
+                mRunning++;
+                mMostRunning = Math.max(mMostRunning, mRunning);
+            }
+            try {
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                synchronized (this) {
+                    mRunning--;
+                }
+            }
+            return !fail;
+        }
+
+        synchronized List<String> getUrls() {
+            return new ArrayList<String>(mUrls);
+        }
+
+        synchronized int getRunning() {
+            return mRunning;
+        }
+
+        synchronized int getMostRunning() {
+            return mMostRunning;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.sunshine.weatherwear.sync;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.sync.ForecastJsonParser;
+
+import org.json.JSONException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.Locale;
+
+/*
+    Checks that the streaming forecast parser produces the same rows as the JSONObject one,
+    and logs how long each takes on 14 and 16 day responses.
+ */
+public class TestForecastJsonParser extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastJsonParser.class.getSimpleName();
+
+    private static final int WARM_UP_ROUNDS = 50;
+    private static final int TIMED_ROUNDS = 500;
+
+    static String createForecastJson(int days) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"city\":{\"id\":5375480,\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.083847,\"lat\":37.386051},")
+                .append("\"country\":\"US\",\"population\":0},")
+                .append("\"cod\":\"200\",\"message\":0.0135,\"cnt\":").append(days)
+                .append(",\"list\":[");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) json.append(',');
+            json.append(String.format(Locale.US,
+                    "{\"dt\":%d,\"temp\":{\"day\":20.5,\"min\":%.2f,\"max\":%.2f,\"night\":11.2," +
+                            "\"eve\":18.3,\"morn\":12.1},\"pressure\":%.2f,\"humidity\":%d," +
+                            "\"weather\":[{\"id\":%d,\"main\":\"Clear\",\"description\":\"sky is clear\"," +
+                            "\"icon\":\"01d\"}],\"speed\":%.2f,\"deg\":%d,\"clouds\":0}",
+                    1419033600L + i * 86400L, 10.0 + i, 20.0 + i, 1010.0 + i, 40 + i,
+                    800 + (i % 5), 1.5 + i, (i * 23) % 360));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static InputStream streamOf(String json) throws IOException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+
+    public void testStreamMatchesTree() throws IOException, JSONException {
+        String json = createForecastJson(14);
+
+        ForecastJsonParser.Forecast tree = ForecastJsonParser.parseTree(json);
+        ForecastJsonParser.Forecast stream = ForecastJsonParser.parseStream(streamOf(json));
+
+        assertEquals(HttpURLConnection.HTTP_OK, stream.messageCode);
+        assertEquals(tree.cityName, stream.cityName);
+        assertEquals(tree.cityLatitude, stream.cityLatitude);
+        assertEquals(tree.cityLongitude, stream.cityLongitude);
+        assertEquals(14, stream.days.size());
+        for (int i = 0; i < tree.days.size(); i++) {
+            ContentValues expected = tree.days.get(i);
+            ContentValues actual = stream.days.get(i);
+            assertEquals("Error: day " + i + " differs between parsers",
+                    expected.size(), actual.size());
+            for (String key : expected.keySet()) {
+                assertEquals("Error: " + key + " differs on day " + i,
+                        expected.getAsString(key), actual.getAsString(key));
+            }
+        }
+        assertFalse(stream.days.get(0).containsKey(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
+    }
+
+    public void testStreamReportsErrorCode() throws IOException, JSONException {
+        ForecastJsonParser.Forecast forecast = ForecastJsonParser.parseStream(
+                streamOf("{\"cod\":\"404\",\"message\":\"Error: Not found city\"}"));
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, forecast.messageCode);
+        assertEquals(0, forecast.days.size());
+    }
+
+    public void testStreamRejectsIncompleteDay() throws IOException {
+        try {
+            ForecastJsonParser.parseStream(streamOf(
+                    "{\"city\":{\"name\":\"X\",\"coord\":{\"lat\":1,\"lon\":2}}," +
+                            "\"list\":[{\"pressure\":1000}]}"));
+            fail("Error: a day without temperatures should not parse");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    public void testParserBenchmark() throws IOException, JSONException {
+        benchmark(14);
+        benchmark(16);
+    }
+
+    private void benchmark(int days) throws IOException, JSONException {
+        String json = createForecastJson(days);
+        byte[] body = json.getBytes("UTF-8");
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            ForecastJsonParser.parseTree(readBody(body));
+            ForecastJsonParser.parseStream(new ByteArrayInputStream(body));
+        }
+
+        // The tree parser is timed including reading the body into a String, since that's
+        // the cost it has in the sync adapter.
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+            ForecastJsonParser.parseTree(readBody(body));
+        }
+        long treeNanos = (System.nanoTime() - start) / TIMED_ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < TIMED_ROUNDS; i++) {
+            ForecastJsonParser.parseStream(new ByteArrayInputStream(body));
+        }
+        long streamNanos = (System.nanoTime() - start) / TIMED_ROUNDS;
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d days (%d bytes): tree %d us/parse, stream %d us/parse",
+                days, body.length, treeNanos / 1000, streamNanos / 1000));
+    }
+
+    private static String readBody(byte[] body) throws IOException {
+        // Mirrors how the sync adapter used to build the response String.
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body)));
+        StringBuffer buffer = new StringBuffer();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            buffer.append(line + "\n");
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.android.sunshine.weatherwear.sync;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.SyncResult;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.weatherwear.utils.PollingCheck;
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.Settings;
+import com.explore.archana.weatherwear.data.ForecastSnapshot;
+import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.sync.ForecastFetcher;
+import com.explore.archana.weatherwear.sync.ForecastValidatorCache;
+import com.explore.archana.weatherwear.sync.SunshineSyncAdapter;
+import com.explore.archana.weatherwear.sync.WeatherNotifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/*
+    Runs conditional forecast requests against a tiny local HTTP server that answers 200 with
+    validators the first time and 304 once the client sends them back, both by hand and
+    through a whole sync.
+ */
+public class TestForecastValidatorCache extends AndroidTestCase {
+
+    static final String ETAG = "\"forecast-v1\"";
+    static final String LAST_MODIFIED = "Sat, 20 Dec 2014 00:00:00 GMT";
+
+    // Where ForecastValidatorCache keeps its validators
+    private static final String VALIDATOR_PREFS_NAME = "forecast_validators";
+    private static final String SYNC_LOCATION = "stand-in";
+    private static final int SYNC_DAYS = 14;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private StandInServer mServer;
+    private ForecastValidatorCache mCache;
+    private String mBaseUrl;
+    private String mRequestKey;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StandInServer(TestForecastJsonParser.createForecastJson(SYNC_DAYS));
+        mServer.start();
+        // The server picks a new port every time, so nothing stored here is shared with the
+        // app's own requests or an earlier run
+        mBaseUrl = "http://127.0.0.1:" + mServer.getPort() + "/data/2.5/forecast/daily?";
+        mRequestKey = mBaseUrl + "q=94043";
+        mCache = new ForecastValidatorCache(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.close();
+        forgetValidators();
+        super.tearDown();
+    }
+
+    public void testFirstRequestIsUnconditional() throws IOException {
+        HttpURLConnection connection = open();
+        assertFalse("Error: no validators should be sent before anything is stored",
+                mCache.applyTo(connection, mRequestKey));
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        connection.disconnect();
+        assertNull(mServer.mLastHeaders.get("if-none-match"));
+    }
+
+    public void testStoredValidatorsProduceNotModified() throws IOException {
+        HttpURLConnection connection = open();
+        mCache.applyTo(connection, mRequestKey);
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        drain(connection);
+        mCache.store(mRequestKey, connection.getHeaderField("ETag"),
+                connection.getHeaderField("Last-Modified"));
+        connection.disconnect();
+        long storedAt = mCache.getLastChecked(mRequestKey);
+        assertTrue("Error: storing a response should record when it was checked", storedAt > 0);
+
+        connection = open();
+        assertTrue(mCache.applyTo(connection, mRequestKey));
+        assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+        connection.disconnect();
+        assertEquals(ETAG, mServer.mLastHeaders.get("if-none-match"));
+        assertEquals(LAST_MODIFIED, mServer.mLastHeaders.get("if-modified-since"));
+
+        mCache.markChecked(mRequestKey);
+        assertTrue(mCache.getLastChecked(mRequestKey) >= storedAt);
+        assertEquals(1, mServer.mFullResponses);
+        assertEquals(1, mServer.mNotModifiedResponses);
+    }
+
+    public void testNotModifiedSyncSkipsEverything() throws Exception {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        Map<String, ?> savedPrefs = prefs.getAll();
+        String locationKey = mContext.getString(R.string.pref_location_key);
+        String statusKey = mContext.getString(R.string.pref_location_status_key);
+        String enabledKey = mContext.getString(R.string.pref_enable_notifications_key);
+        String lastKey = mContext.getString(R.string.pref_last_notification);
+        deleteAllRecords();
+        prefs.edit()
+                .putString(locationKey, SYNC_LOCATION)
+                .putBoolean(enabledKey, true)
+                .putLong(lastKey, 0)
+                .commit();
+        try {
+            waitForLocation(SYNC_LOCATION);
+            SunshineSyncAdapter syncAdapter = new SunshineSyncAdapter(mContext, false);
+            final WeatherNotifier notifier = WeatherNotifier.getInstance(mContext);
+            final int notifiesBefore = notifier.getNotifyCount();
+
+            // The first sync downloads the forecast, writes it and tells everyone
+            int snapshotQueries = ForecastSnapshot.getQueryCount();
+            SyncResult syncResult = new SyncResult();
+            ForecastFetcher.Result result = sync(syncAdapter, false, syncResult);
+            assertFalse(result.notModified);
+            assertEquals(SYNC_DAYS, result.forecast.days.size());
+            assertEquals(SYNC_DAYS, syncResult.stats.numInserts);
+            assertEquals(1, ForecastSnapshot.getQueryCount() - snapshotQueries);
+            PollingCheck.check("Error: the notification was never posted", TIMEOUT_MILLIS,
+                    new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() throws Exception {
+                            return notifier.getNotifyCount() > notifiesBefore;
+                        }
+                    });
+            prefs.edit().putLong(lastKey, 0).commit();
+            int notifiesAfterFirst = notifier.getNotifyCount();
+
+            // The second gets a 304, so there's nothing to parse, write or tell anyone about
+            snapshotQueries = ForecastSnapshot.getQueryCount();
+            syncResult = new SyncResult();
+            result = sync(syncAdapter, true, syncResult);
+            assertTrue(result.notModified);
+            assertNull("Error: a 304 has nothing to parse", result.forecast);
+            assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, result.status);
+            assertEquals("Error: a 304 shouldn't write to the provider", 0,
+                    syncResult.stats.numInserts + syncResult.stats.numUpdates
+                            + syncResult.stats.numSkippedEntries + syncResult.stats.numDeletes);
+            // The snapshot is refreshed before anything else is woken up, in the same place
+            assertEquals("Error: a 304 shouldn't wake up the widgets, Muzei or the notification",
+                    0, ForecastSnapshot.getQueryCount() - snapshotQueries);
+            assertEquals(notifiesAfterFirst, notifier.getNotifyCount());
+
+            assertEquals(1, mServer.mFullResponses);
+            assertEquals(1, mServer.mNotModifiedResponses);
+        } finally {
+            SharedPreferences.Editor editor = prefs.edit();
+            for (String key : Arrays.asList(locationKey, statusKey, enabledKey, lastKey)) {
+                restore(editor, key, savedPrefs.get(key));
+            }
+            editor.remove(mContext.getString(R.string.pref_location_status_prefix) + SYNC_LOCATION);
+            editor.commit();
+            waitForLocation(savedPrefs.containsKey(locationKey)
+                    ? (String) savedPrefs.get(locationKey)
+                    : mContext.getString(R.string.pref_location_default));
+            ((NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE)).cancelAll();
+            ForecastSnapshot.invalidate();
+            deleteAllRecords();
+        }
+    }
+
+    private ForecastFetcher.Result sync(SunshineSyncAdapter syncAdapter, boolean conditional,
+                                        SyncResult syncResult) {
+        ForecastFetcher fetcher = new ForecastFetcher(mBaseUrl, SYNC_LOCATION, null, null,
+                mCache, conditional);
+        List<ForecastFetcher.Result> results = syncAdapter.syncForecasts(
+                Arrays.asList(fetcher), SYNC_LOCATION, mCache, syncResult);
+        assertEquals(1, results.size());
+        return results.get(0);
+    }
+
+    // The listener that updates Settings runs on the main thread, not this one
+    private void waitForLocation(final String location) throws Exception {
+        PollingCheck.check("Error: the settings never got the new location", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return location.equals(Settings.get(mContext).locationSetting);
+                    }
+                });
+    }
+
+    private static void restore(SharedPreferences.Editor editor, String key, Object value) {
+        if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else {
+            editor.remove(key);
+        }
+    }
+
+    // Only this run's validators, the app's own are left alone
+    private void forgetValidators() {
+        SharedPreferences prefs = mContext.getSharedPreferences(VALIDATOR_PREFS_NAME,
+                Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit();
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(mBaseUrl)) {
+                editor.remove(key);
+            }
+        }
+        editor.commit();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    private HttpURLConnection open() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mRequestKey).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private static void drain(HttpURLConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        byte[] buffer = new byte[256];
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+        in.close();
+    }
+
+    /**
+     * A single threaded HTTP/1.0 server that's just good enough for the requests above.
+     */
+    static class StandInServer extends Thread {
+        private final ServerSocket mSocket;
+        volatile Map<String, String> mLastHeaders = new HashMap<String, String>();
+        volatile int mFullResponses;
+        volatile int mNotModifiedResponses;
+        private final byte[] mBody;
+
+        StandInServer(String body) throws IOException {
+            mBody = body.getBytes("UTF-8");
+            mSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return mSocket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            mSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mSocket.isClosed()) {
+                try {
+                    Socket client = mSocket.accept();
+                    try {
+                        respond(client);
+                    } finally {
+                        client.close();
+                    }
+                } catch (IOException e) {
+                    // socket closed by the test
+                }
+            }
+        }
+
+        private void respond(Socket client) throws IOException {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), "ISO-8859-1"));
+            Map<String, String> headers = new HashMap<String, String>();
+            reader.readLine(); // request line
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                            line.substring(colon + 1).trim());
+                }
+            }
+            mLastHeaders = headers;
+
+            String response;
+            byte[] body = null;
+            if (ETAG.equals(headers.get("if-none-match"))) {
+                mNotModifiedResponses++;
+                response = "HTTP/1.0 304 Not Modified\r\n" +
+                        "ETag: " + ETAG + "\r\n" +
+                        "Connection: close\r\n\r\n";
+            } else {
+                mFullResponses++;
+                response = "HTTP/1.0 200 OK\r\n" +
+                        "Content-Type: application/json\r\n" +
+                        "Content-Length: " + mBody.length + "\r\n" +
+                        "ETag: " + ETAG + "\r\n" +
+                        "Last-Modified: " + LAST_MODIFIED + "\r\n" +
+                        "Connection: close\r\n\r\n";
+                body = mBody;
+            }
+            OutputStream out = client.getOutputStream();
+            out.write(response.getBytes("ISO-8859-1"));
+            if (body != null) {
+                out.write(body);
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.android.sunshine.weatherwear.sync;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import com.explore.archana.weatherwear.sync.LargeIconCache;
+
+import java.io.File;
+
+/*
+    Checks the large icon cache only renders an icon once per bucket, pack and size, that a
+    new cache (as after the process restarts) finds it on disk, and that an art pack that
+    can't be had falls back to the built in art without being cached in its place.
+ */
+public class TestLargeIconCache extends AndroidTestCase {
+
+    private static final String ART_PACK = "http://example.com/art_%s.png";
+    private static final int SIZE = 64;
+
+    // moderate rain and heavy rain are in the same bucket, clear sky isn't
+    private static final int MODERATE_RAIN = 501;
+    private static final int HEAVY_RAIN = 502;
+    private static final int CLEAR = 800;
+
+    private File mDirectory;
+    private CountingRenderer mRenderer;
+    private LargeIconCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(mContext.getCacheDir(), "test_large_icons");
+        mRenderer = new CountingRenderer();
+        mCache = new LargeIconCache(mDirectory, mRenderer);
+        mCache.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCache.clear();
+        mDirectory.delete();
+        super.tearDown();
+    }
+
+    public void testRendersOncePerBucket() {
+        Bitmap first = mCache.get(MODERATE_RAIN, ART_PACK, SIZE, SIZE);
+        assertNotNull(first);
+        assertEquals(SIZE, first.getWidth());
+        assertSame("Error: the same bucket should share its icon",
+                first, mCache.get(HEAVY_RAIN, ART_PACK, SIZE, SIZE));
+        assertEquals(1, mRenderer.renders);
+        assertEquals(1, mCache.getMemoryHits());
+
+        // Each of these is a different icon
+        mCache.get(CLEAR, ART_PACK, SIZE, SIZE);
+        mCache.get(MODERATE_RAIN, null, SIZE, SIZE);
+        mCache.get(MODERATE_RAIN, ART_PACK, SIZE * 2, SIZE * 2);
+        assertEquals(4, mRenderer.renders);
+    }
+
+    public void testFoundOnDisk() {
+        mCache.get(MODERATE_RAIN, ART_PACK, SIZE, SIZE);
+        assertEquals(1, mRenderer.renders);
+
+        LargeIconCache restarted = new LargeIconCache(mDirectory, mRenderer);
+        assertTrue(restarted.contains(HEAVY_RAIN, ART_PACK, SIZE, SIZE));
+        Bitmap icon = restarted.get(HEAVY_RAIN, ART_PACK, SIZE, SIZE);
+        assertNotNull(icon);
+        assertEquals(SIZE, icon.getHeight());
+        assertEquals("Error: the icon should have come from disk", 1, mRenderer.renders);
+        assertEquals(1, restarted.getDiskHits());
+    }
+
+    public void testArtPackFallback() {
+        mRenderer.failArtPack = true;
+        assertNotNull("Error: should have fallen back to the built in art",
+                mCache.get(CLEAR, ART_PACK, SIZE, SIZE));
+        assertTrue(mCache.contains(CLEAR, null, SIZE, SIZE));
+        assertFalse("Error: the stand in shouldn't be kept for the art pack",
+                mCache.contains(CLEAR, ART_PACK, SIZE, SIZE));
+
+        // Once the art pack can be had again it's used
+        mRenderer.failArtPack = false;
+        mCache.get(CLEAR, ART_PACK, SIZE, SIZE);
+        assertTrue(mCache.contains(CLEAR, ART_PACK, SIZE, SIZE));
+    }
+
+    public void testUnknownCondition() {
+        assertNull(mCache.get(42, ART_PACK, SIZE, SIZE));
+        assertEquals(0, mRenderer.renders);
+    }
+
+    static class CountingRenderer implements LargeIconCache.Renderer {
+        int renders;
+        boolean failArtPack;
+
+        @Override
+        public Bitmap render(int weatherId, String artPack, int width, int height) {
+            renders++;
+            if (artPack != null && failArtPack) {
+                return null;
+            }
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+    }
+}
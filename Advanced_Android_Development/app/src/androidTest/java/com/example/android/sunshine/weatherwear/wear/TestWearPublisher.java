@@ -0,0 +1,225 @@
+package com.example.android.sunshine.weatherwear.wear;
+
+import android.test.AndroidTestCase;
+
+import com.example.WatchfaceSyncCommons;
+import com.example.WeatherPayload;
+import com.example.android.sunshine.weatherwear.utils.PollingCheck;
+import com.explore.archana.weatherwear.WearPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/*
+    Runs the publisher against a fake Data API that just records what it's asked to do, and
+    checks bursts go out as one put, repeats of the same forecast don't go out at all, the
+    connection is made once and only dropped after it's been idle, and a forecast that
+    couldn't be sent is tried again on its own.
+ */
+public class TestWearPublisher extends AndroidTestCase {
+
+    private static final long COALESCE_DELAY_MILLIS = 100;
+    private static final long IDLE_DISCONNECT_MILLIS = 400;
+    private static final long RETRY_DELAY_MILLIS = 50;
+    private static final long TIMEOUT_MILLIS = 3000;
+
+    // 2014-12-20 00:00 UTC
+    private static final long TEST_DATE = 1419033600000L;
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    private FakeDataLayer mDataLayer;
+    private WearPublisher mPublisher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDataLayer = new FakeDataLayer();
+        mPublisher = new WearPublisher(mDataLayer, COALESCE_DELAY_MILLIS, IDLE_DISCONNECT_MILLIS,
+                RETRY_DELAY_MILLIS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPublisher.shutdown();
+        assertEquals("Error: put before connecting", 0, mDataLayer.getUnconnectedPutCount());
+        super.tearDown();
+    }
+
+    public void testBurstIsCoalesced() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mPublisher.publish(createPayload(20 + i, TEST_DATE + i));
+        }
+        waitForPublishCount(1);
+
+        assertEquals(1, mDataLayer.getPutCount());
+        assertEquals(4, mPublisher.getCoalescedCount());
+        assertEquals(1, mPublisher.getConnectCount());
+
+        // only the newest of the burst should have gone out
+        WeatherPayload sent = new WeatherPayload();
+        sent.decode(mDataLayer.getLastPut());
+        assertEquals(24f, sent.getMaxTemp(0));
+        assertEquals(WatchfaceSyncCommons.KEY_PATH, mDataLayer.mLastPath);
+        assertEquals(WatchfaceSyncCommons.KEY_FORECAST, mDataLayer.mLastKey);
+    }
+
+    public void testSameForecastIsSkipped() throws Exception {
+        mPublisher.publish(createPayload(20, TEST_DATE));
+        waitForPublishCount(1);
+
+        // Built again later, so only the timestamp differs
+        mPublisher.publish(createPayload(20, TEST_DATE + 60000));
+        PollingCheck.check("Error: the repeat was never looked at", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mPublisher.getSkippedDuplicateCount() == 1;
+                    }
+                });
+        assertEquals(1, mPublisher.getPublishCount());
+        assertEquals(1, mDataLayer.getPutCount());
+
+        mPublisher.publish(createPayload(21, TEST_DATE + 120000));
+        waitForPublishCount(2);
+        assertEquals(2, mDataLayer.getPutCount());
+    }
+
+    public void testConnectionOutlivesPublishes() throws Exception {
+        mPublisher.publish(createPayload(20, TEST_DATE));
+        waitForPublishCount(1);
+        mPublisher.publish(createPayload(21, TEST_DATE));
+        waitForPublishCount(2);
+        assertEquals("Error: the second publish should reuse the connection",
+                1, mPublisher.getConnectCount());
+        assertEquals(0, mPublisher.getDisconnectCount());
+
+        PollingCheck.check("Error: never disconnected once idle", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mPublisher.getDisconnectCount() == 1;
+                    }
+                });
+        assertFalse(mDataLayer.isConnected());
+        assertTrue(mPublisher.getConnectedMillis() >= IDLE_DISCONNECT_MILLIS);
+
+        // and it comes back when there's something new to send
+        mPublisher.publish(createPayload(22, TEST_DATE));
+        waitForPublishCount(3);
+        assertEquals(2, mPublisher.getConnectCount());
+        assertEquals(2, mDataLayer.mConnectCalls);
+    }
+
+    public void testFailedConnectionIsRetried() throws Exception {
+        mDataLayer.mFailConnect = true;
+        mPublisher.publish(createPayload(20, TEST_DATE));
+        PollingCheck.check("Error: never tried to connect again", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mDataLayer.mConnectCalls >= 2;
+                    }
+                });
+
+        // The same forecast goes out once the data layer is back, with no new publish
+        mDataLayer.mFailConnect = false;
+        waitForPublishCount(1);
+        assertTrue(mPublisher.getRetryCount() >= 2);
+        assertEquals(1, mDataLayer.getPutCount());
+        assertEquals(0, mPublisher.getSkippedDuplicateCount());
+        assertEquals(0, mPublisher.getCoalescedCount());
+    }
+
+    public void testNewerForecastReplacesRetry() throws Exception {
+        mDataLayer.mFailConnect = true;
+        mPublisher.publish(createPayload(20, TEST_DATE));
+        PollingCheck.check("Error: never tried to connect", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mDataLayer.mConnectCalls >= 1;
+                    }
+                });
+
+        // Published while the first is waiting to be retried, so that one is dropped
+        mPublisher.publish(createPayload(21, TEST_DATE));
+        mDataLayer.mFailConnect = false;
+        waitForPublishCount(1);
+        WeatherPayload sent = new WeatherPayload();
+        sent.decode(mDataLayer.getLastPut());
+        assertEquals(21f, sent.getMaxTemp(0));
+        assertEquals(1, mDataLayer.getPutCount());
+        assertEquals(0, mPublisher.getCoalescedCount());
+    }
+
+    private void waitForPublishCount(final int count) throws Exception {
+        PollingCheck.check("Error: expected " + count + " publishes", TIMEOUT_MILLIS,
+                new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return mPublisher.getPublishCount() == count;
+                    }
+                });
+        assertEquals("Error: put before connecting", 0, mDataLayer.getUnconnectedPutCount());
+    }
+
+    private static byte[] createPayload(double maxTemp, long timestamp) {
+        WeatherPayload payload = new WeatherPayload();
+        payload.setTimestamp(timestamp);
+        payload.addDay(TEST_DATE, 500, maxTemp, 8);
+        payload.addDay(TEST_DATE + DAY_IN_MILLIS, 800, 18, 7);
+        return payload.encode();
+    }
+
+    static class FakeDataLayer implements WearPublisher.DataLayer {
+
+        volatile boolean mFailConnect;
+        volatile int mConnectCalls;
+        volatile String mLastPath;
+        volatile String mLastKey;
+        private final List<byte[]> mPuts = new ArrayList<byte[]>();
+        private boolean mConnected;
+        // Counted rather than asserted, since an assert on the publisher's thread is lost
+        private int mUnconnectedPuts;
+
+        @Override
+        public synchronized boolean connect() {
+            mConnectCalls++;
+            mConnected = !mFailConnect;
+            return mConnected;
+        }
+
+        @Override
+        public synchronized void disconnect() {
+            mConnected = false;
+        }
+
+        @Override
+        public synchronized boolean putDataItem(String path, String key, byte[] value) {
+            if (!mConnected) {
+                mUnconnectedPuts++;
+            }
+            mLastPath = path;
+            mLastKey = key;
+            mPuts.add(value);
+            return true;
+        }
+
+        synchronized boolean isConnected() {
+            return mConnected;
+        }
+
+        synchronized int getUnconnectedPutCount() {
+            return mUnconnectedPuts;
+        }
+
+        synchronized int getPutCount() {
+            return mPuts.size();
+        }
+
+        synchronized byte[] getLastPut() {
+            return mPuts.get(mPuts.size() - 1);
+        }
+    }
+}
@@ -37,7 +37,9 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.explore.archana.weatherwear.data.WeatherContract;
+import com.explore.archana.weatherwear.sync.ArtPrefetcher;
 
 /**
  * A placeholder fragment containing a simple view.
@@ -202,8 +204,11 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
                 mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
             } else {
                 // Use weather art image
+                String artUrl = Utility.getArtUrlForWeatherCondition(getActivity(), weatherId);
+                ArtPrefetcher.getInstance(getActivity()).recordUse(artUrl);
                 Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
+                        .load(artUrl)
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
                         .error(Utility.getArtResourceForWeatherCondition(weatherId))
                         .crossFade()
                         .into(mIconView);
@@ -0,0 +1,92 @@
+package com.explore.archana.weatherwear;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+/**
+ * One day of the forecast list, with everything the row shows already worked out, so
+ * binding it is just setting text.  Built by {@link ForecastRowLoader} off the main thread
+ * and never changed after that.
+ */
+public final class ForecastRow {
+
+    public final long date;
+    public final int weatherId;
+    // art for the "today" layout, icon for the rest
+    public final int artResId;
+    public final int iconResId;
+    // the art pack's URL for the weather, or null when using the built in graphics
+    public final String artUrl;
+    public final String dayText;
+    // what the "today" layout shows instead of dayText
+    public final String longDayText;
+    public final String description;
+    public final String descriptionA11y;
+    public final String highText;
+    public final String highA11y;
+    public final String lowText;
+    public final String lowA11y;
+
+    public ForecastRow(long date, int weatherId, int artResId, int iconResId, String artUrl,
+                       String dayText, String longDayText, String description,
+                       String descriptionA11y, String highText, String highA11y,
+                       String lowText, String lowA11y) {
+        this.date = date;
+        this.weatherId = weatherId;
+        this.artResId = artResId;
+        this.iconResId = iconResId;
+        this.artUrl = artUrl;
+        this.dayText = dayText;
+        this.longDayText = longDayText;
+        this.description = description;
+        this.descriptionA11y = descriptionA11y;
+        this.highText = highText;
+        this.highA11y = highA11y;
+        this.lowText = lowText;
+        this.lowA11y = lowA11y;
+    }
+
+    /**
+     * Formats one day.  The units and art pack are passed in so they're read once per list,
+     * not once per row.
+     *
+     * @param artPack the art pack's URL format, or null for the built in graphics
+     * @param first whether it's the first row, the only one that can use the "today" layout
+     */
+    public static ForecastRow create(Context context, long date, int weatherId, double high,
+                                     double low, boolean isMetric, String artPack,
+                                     boolean first) {
+        String dayText = Utility.getFriendlyDayString(context, date, false);
+        String description = Utility.getStringForWeatherCondition(context, weatherId);
+        String highText = Utility.formatTemperature(context, high, isMetric);
+        String lowText = Utility.formatTemperature(context, low, isMetric);
+        return new ForecastRow(date, weatherId,
+                Utility.getArtResourceForWeatherCondition(weatherId),
+                Utility.getIconResourceForWeatherCondition(weatherId),
+                artPack == null ? null : Utility.getArtUrlForWeatherCondition(artPack, weatherId),
+                dayText,
+                first ? Utility.getFriendlyDayString(context, date, true) : dayText,
+                description,
+                context.getString(R.string.a11y_forecast, description),
+                highText,
+                context.getString(R.string.a11y_high_temp, highText),
+                lowText,
+                context.getString(R.string.a11y_low_temp, lowText));
+    }
+
+    /**
+     * @return true if the row would look the same bound to either
+     */
+    public boolean sameContents(ForecastRow other) {
+        return date == other.date
+                && artResId == other.artResId
+                && iconResId == other.iconResId
+                && TextUtils.equals(artUrl, other.artUrl)
+                && TextUtils.equals(dayText, other.dayText)
+                && TextUtils.equals(longDayText, other.longDayText)
+                // the accessibility text is made from these
+                && TextUtils.equals(description, other.description)
+                && TextUtils.equals(highText, other.highText)
+                && TextUtils.equals(lowText, other.lowText);
+    }
+}
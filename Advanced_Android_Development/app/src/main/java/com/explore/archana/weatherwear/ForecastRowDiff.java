@@ -0,0 +1,102 @@
+package com.explore.archana.weatherwear;
+
+import java.util.List;
+
+/**
+ * Works out the smallest set of inserts, removes and changes that turns one forecast list
+ * into another, so the adapter only rebinds the days that actually changed.
+ *
+ * Both lists are in date order with at most one row per date (that's how the forecast query
+ * sorts them), so a single merge-like pass over the two finds everything; no general purpose
+ * diff needed.
+ */
+public final class ForecastRowDiff {
+
+    /**
+     * Receives the updates in order, each position as it is after the updates before it,
+     * which is what RecyclerView.Adapter's notifyItem methods expect.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+    }
+
+    private ForecastRowDiff() {
+    }
+
+    public static void dispatch(List<ForecastRow> oldRows, List<ForecastRow> newRows,
+                                Callback callback) {
+        Batcher batcher = new Batcher(callback);
+        int oldIndex = 0;
+        int newIndex = 0;
+        int position = 0;
+        while (oldIndex < oldRows.size() || newIndex < newRows.size()) {
+            ForecastRow oldRow = oldIndex < oldRows.size() ? oldRows.get(oldIndex) : null;
+            ForecastRow newRow = newIndex < newRows.size() ? newRows.get(newIndex) : null;
+            if (newRow == null || (oldRow != null && oldRow.date < newRow.date)) {
+                batcher.add(Batcher.REMOVED, position);
+                oldIndex++;
+            } else if (oldRow == null || newRow.date < oldRow.date) {
+                batcher.add(Batcher.INSERTED, position);
+                position++;
+                newIndex++;
+            } else {
+                if (!oldRow.sameContents(newRow)) {
+                    batcher.add(Batcher.CHANGED, position);
+                }
+                position++;
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        batcher.flush();
+    }
+
+    // Joins updates of the same kind at neighbouring positions into one range
+    private static class Batcher {
+        static final int NONE = 0;
+        static final int INSERTED = 1;
+        static final int REMOVED = 2;
+        static final int CHANGED = 3;
+
+        private final Callback callback;
+        private int type = NONE;
+        private int start;
+        private int count;
+
+        Batcher(Callback callback) {
+            this.callback = callback;
+        }
+
+        void add(int type, int position) {
+            // removing shifts the next row into the same position, the others into the next
+            int next = this.type == REMOVED ? start : start + count;
+            if (type == this.type && position == next) {
+                count++;
+                return;
+            }
+            flush();
+            this.type = type;
+            start = position;
+            count = 1;
+        }
+
+        void flush() {
+            switch (type) {
+                case INSERTED:
+                    callback.onInserted(start, count);
+                    break;
+                case REMOVED:
+                    callback.onRemoved(start, count);
+                    break;
+                case CHANGED:
+                    callback.onChanged(start, count);
+                    break;
+            }
+            type = NONE;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.explore.archana.weatherwear;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the forecast list and formats every row of it in the background, so the adapter
+ * only has to set text.  Like a CursorLoader it loads again when the data changes, but the
+ * cursor is closed as soon as the rows are made, so the URI is watched directly rather than
+ * through the cursor.
+ */
+public class ForecastRowLoader extends AsyncTaskLoader<ForecastRowLoader.Result> {
+
+    /**
+     * The rows, plus what the list needs beyond them.
+     */
+    public static class Result {
+        public final List<ForecastRow> rows;
+        // where the location is, for showing it on a map; null if there are no rows
+        public final String coordLat;
+        public final String coordLong;
+        // the settings the rows were formatted with
+        public final Settings settings;
+
+        public Result(List<ForecastRow> rows, String coordLat, String coordLong,
+                      Settings settings) {
+            this.rows = Collections.unmodifiableList(rows);
+            this.coordLat = coordLat;
+            this.coordLong = coordLong;
+            this.settings = settings;
+        }
+
+        /**
+         * @return true if the units or art pack have changed since the rows were formatted
+         */
+        public boolean isStale(Context context) {
+            Settings current = Settings.get(context);
+            if (current.version == settings.version) {
+                return false;
+            }
+            return current.isMetric != settings.isMetric
+                    || !current.artPack.equals(settings.artPack);
+        }
+    }
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSortOrder;
+    private Result mResult;
+    private boolean mObserving;
+
+    public ForecastRowLoader(Context context, Uri uri, String[] projection, String sortOrder) {
+        super(context);
+        mUri = uri;
+        mProjection = projection;
+        mSortOrder = sortOrder;
+    }
+
+    @Override
+    public Result loadInBackground() {
+        Context context = getContext();
+        Cursor cursor = context.getContentResolver().query(mUri, mProjection, null, null,
+                mSortOrder);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return buildResult(context, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Formats the rows of a cursor with ForecastFragment's FORECAST_COLUMNS.
+     */
+    public static Result buildResult(Context context, Cursor cursor) {
+        Settings settings = Settings.get(context);
+        String rowArtPack = settings.usingLocalGraphics ? null : settings.artPack;
+
+        List<ForecastRow> rows = new ArrayList<ForecastRow>(cursor.getCount());
+        String coordLat = null;
+        String coordLong = null;
+        while (cursor.moveToNext()) {
+            if (rows.isEmpty()) {
+                coordLat = cursor.getString(ForecastFragment.COL_COORD_LAT);
+                coordLong = cursor.getString(ForecastFragment.COL_COORD_LONG);
+            }
+            rows.add(ForecastRow.create(context,
+                    cursor.getLong(ForecastFragment.COL_WEATHER_DATE),
+                    cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID),
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP),
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP),
+                    settings.isMetric, rowArtPack, rows.isEmpty()));
+        }
+        return new Result(rows, coordLat, coordLong, settings);
+    }
+
+    @Override
+    public void deliverResult(Result result) {
+        if (isReset()) {
+            return;
+        }
+        mResult = result;
+        if (isStarted()) {
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(mUri, true, mObserver);
+            mObserving = true;
+        }
+        if (mResult != null) {
+            deliverResult(mResult);
+        }
+        if (takeContentChanged() || mResult == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mResult = null;
+    }
+}
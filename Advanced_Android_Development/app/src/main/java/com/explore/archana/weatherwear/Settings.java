@@ -0,0 +1,107 @@
+package com.explore.archana.weatherwear;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * The user's settings as they are right now, read out of the preferences once rather than on
+ * every call.  A snapshot never changes; when one of the settings below is changed a new one
+ * is made with the next version number, so anything built from the settings can keep the
+ * version it was built with and tell whether it's out of date.
+ *
+ * A single listener keeps it up to date.  SharedPreferences only calls listeners on the main
+ * thread, so a change committed from a background thread shows up here a moment later; all the
+ * settings are changed from the settings screen, so in practice that doesn't happen.
+ */
+public final class Settings {
+
+    private static final Object sLock = new Object();
+    private static volatile Settings sCurrent;
+    // SharedPreferences only keeps weak references to its listeners, so hold on to ours
+    private static Listener sListener;
+
+    public final int version;
+    public final String locationSetting;
+    public final boolean isMetric;
+    public final boolean isLocationLatLonAvailable;
+    public final float locationLatitude;
+    public final float locationLongitude;
+    // URL format of the art pack
+    public final String artPack;
+    public final boolean usingLocalGraphics;
+
+    private Settings(Context context, SharedPreferences prefs, int version) {
+        this.version = version;
+        locationSetting = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String metric = context.getString(R.string.pref_units_metric);
+        isMetric = prefs.getString(context.getString(R.string.pref_units_key), metric)
+                .equals(metric);
+
+        String latitudeKey = context.getString(R.string.pref_location_latitude);
+        String longitudeKey = context.getString(R.string.pref_location_longitude);
+        isLocationLatLonAvailable = prefs.contains(latitudeKey) && prefs.contains(longitudeKey);
+        locationLatitude = prefs.getFloat(latitudeKey, Utility.DEFAULT_LATLONG);
+        locationLongitude = prefs.getFloat(longitudeKey, Utility.DEFAULT_LATLONG);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        artPack = prefs.getString(context.getString(R.string.pref_art_pack_key), sunshineArtPack);
+        usingLocalGraphics = artPack.equals(sunshineArtPack);
+    }
+
+    /**
+     * @return the current settings; the first call reads them and starts listening for changes
+     */
+    public static Settings get(Context context) {
+        Settings current = sCurrent;
+        if (current != null) {
+            return current;
+        }
+        synchronized (sLock) {
+            if (sCurrent == null) {
+                Context appContext = context.getApplicationContext();
+                SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+                sListener = new Listener(appContext);
+                prefs.registerOnSharedPreferenceChangeListener(sListener);
+                sCurrent = new Settings(appContext, prefs, 1);
+            }
+            return sCurrent;
+        }
+    }
+
+    private static class Listener implements SharedPreferences.OnSharedPreferenceChangeListener {
+        private final Context mContext;
+        // The preferences the snapshot is made from; anything else changing doesn't matter
+        private final String[] mKeys;
+
+        Listener(Context context) {
+            mContext = context;
+            mKeys = new String[]{
+                    context.getString(R.string.pref_location_key),
+                    context.getString(R.string.pref_units_key),
+                    context.getString(R.string.pref_location_latitude),
+                    context.getString(R.string.pref_location_longitude),
+                    context.getString(R.string.pref_art_pack_key)
+            };
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+            boolean ours = false;
+            for (String k : mKeys) {
+                if (k.equals(key)) {
+                    ours = true;
+                    break;
+                }
+            }
+            if (!ours) {
+                return;
+            }
+            synchronized (sLock) {
+                sCurrent = new Settings(mContext, prefs, sCurrent.version + 1);
+            }
+        }
+    }
+}
@@ -175,6 +175,11 @@ public class SettingsActivity extends PreferenceActivity
             // our location status has changed.  Update the summary accordingly
             Preference locationPreference = findPreference(getString(R.string.pref_location_key));
             bindPreferenceSummaryToValue(locationPreference);
+        } else if ( key.equals(getString(R.string.pref_sync_all_locations_key)) ) {
+            // bring the saved locations up to date right away rather than at the next sync
+            if (sharedPreferences.getBoolean(key, false)) {
+                SunshineSyncAdapter.syncImmediately(this);
+            }
         } else if ( key.equals(getString(R.string.pref_art_pack_key)) ) {
             // art pack have changed. update lists of weather entries accordingly
             getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
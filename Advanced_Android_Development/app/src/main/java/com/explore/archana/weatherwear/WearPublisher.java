@@ -0,0 +1,372 @@
+package com.explore.archana.weatherwear;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.WatchfaceSyncCommons;
+import com.example.WeatherPayload;
+import com.explore.archana.weatherwear.data.ForecastSnapshot;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the forecast to the watch over one long-lived Data API connection.
+ *
+ * Publishing just hands the payload over: everything else happens on a single worker thread.
+ * Payloads that arrive close together are coalesced, so only the newest of a burst goes out,
+ * and one with the same forecast as the last one sent (timestamp aside) isn't sent at all.
+ * The connection is made the first time there's something to send and kept until nothing
+ * has been published for a while, rather than built and torn down for every update.
+ * A forecast that can't be sent is tried again a few times, each wait twice the last, unless
+ * a newer one comes along first.
+ */
+public class WearPublisher {
+
+    public static final String LOG_TAG = WearPublisher.class.getSimpleName();
+
+    // How long to wait for more updates before sending
+    private static final long COALESCE_DELAY_MILLIS = 500;
+    // How long the connection stays up with nothing to send
+    private static final long IDLE_DISCONNECT_MILLIS = 60 * 1000;
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+    // How long to wait before the first retry of a send that failed
+    private static final long RETRY_DELAY_MILLIS = 30 * 1000;
+    // Doubling each time, this gives up about a quarter of an hour after the first failure
+    private static final int MAX_RETRIES = 5;
+
+    /**
+     * What the publisher needs from the Wearable Data API, so tests can stand in for it.
+     * All of these are called on the publisher's worker thread and may block.
+     */
+    public interface DataLayer {
+        /**
+         * @return true if connected, whether just now or already
+         */
+        boolean connect();
+
+        void disconnect();
+
+        /**
+         * @return true if the data item was put
+         */
+        boolean putDataItem(String path, String key, byte[] value);
+    }
+
+    private static WearPublisher sInstance;
+
+    private final DataLayer mDataLayer;
+    private final long mCoalesceDelayMillis;
+    private final long mIdleDisconnectMillis;
+    private final long mRetryDelayMillis;
+    private final ScheduledExecutorService mWorker;
+
+    // Guarded by this
+    private byte[] mPending;
+    private ScheduledFuture<?> mScheduledSend;
+    private ScheduledFuture<?> mScheduledDisconnect;
+    private int mCoalescedCount;
+    // How many times mPending has already failed to send
+    private int mRetries;
+
+    // Only touched on the worker thread
+    private boolean mConnected;
+    private byte[] mLastPublished;
+    private int mLastPublishedHash;
+    private long mConnectStartMillis;
+
+    // Written on the worker thread, read from anywhere
+    private volatile int mConnectCount;
+    private volatile int mDisconnectCount;
+    private volatile int mPublishCount;
+    private volatile int mSkippedDuplicateCount;
+    private volatile int mRetryCount;
+    private volatile long mConnectedMillis;
+
+    public static synchronized WearPublisher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearPublisher(new GmsDataLayer(context.getApplicationContext()),
+                    COALESCE_DELAY_MILLIS, IDLE_DISCONNECT_MILLIS, RETRY_DELAY_MILLIS);
+        }
+        return sInstance;
+    }
+
+    public WearPublisher(DataLayer dataLayer, long coalesceDelayMillis,
+                         long idleDisconnectMillis, long retryDelayMillis) {
+        mDataLayer = dataLayer;
+        mCoalesceDelayMillis = coalesceDelayMillis;
+        mIdleDisconnectMillis = idleDisconnectMillis;
+        mRetryDelayMillis = retryDelayMillis;
+        mWorker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues an encoded WeatherPayload for the watch.  If one is already waiting it's
+     * replaced, and this one goes out once no newer one has come along for the coalesce delay.
+     */
+    public synchronized void publish(byte[] payload) {
+        if (mWorker.isShutdown()) {
+            return;
+        }
+        // a payload waiting to be retried isn't part of a burst, it's just replaced
+        if (mPending != null && mRetries == 0) {
+            mCoalescedCount++;
+        }
+        mPending = payload;
+        mRetries = 0;
+        if (mScheduledSend != null) {
+            mScheduledSend.cancel(false);
+        }
+        mScheduledSend = mWorker.schedule(mSendRunnable, mCoalesceDelayMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds the forecast payload and publishes it.  Does nothing if there's no forecast yet.
+     */
+    public void publish(Context context) {
+        ForecastSnapshot snapshot = ForecastSnapshot.get(context);
+        if (snapshot.getToday() != null) {
+            publish(buildPayload(context, snapshot).encode());
+        }
+    }
+
+    /**
+     * Drops anything still waiting, disconnects and stops the worker.  Only for tests, the
+     * app's instance lives as long as the process.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            mPending = null;
+            if (mScheduledSend != null) {
+                mScheduledSend.cancel(false);
+            }
+            if (mScheduledDisconnect != null) {
+                mScheduledDisconnect.cancel(false);
+            }
+            mWorker.execute(mDisconnectRunnable);
+            mWorker.shutdown();
+        }
+        try {
+            mWorker.awaitTermination(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getConnectCount() {
+        return mConnectCount;
+    }
+
+    public int getDisconnectCount() {
+        return mDisconnectCount;
+    }
+
+    public int getPublishCount() {
+        return mPublishCount;
+    }
+
+    public int getSkippedDuplicateCount() {
+        return mSkippedDuplicateCount;
+    }
+
+    /**
+     * How many times a send that failed was tried again.
+     */
+    public int getRetryCount() {
+        return mRetryCount;
+    }
+
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * How long the connection was up in total, counting only connections already closed.
+     */
+    public long getConnectedMillis() {
+        return mConnectedMillis;
+    }
+
+    private final Runnable mSendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            byte[] payload;
+            synchronized (WearPublisher.this) {
+                payload = mPending;
+                mPending = null;
+                mScheduledSend = null;
+            }
+            if (payload == null) {
+                return;
+            }
+            if (!send(payload)) {
+                scheduleRetry(payload);
+            }
+            scheduleDisconnect();
+        }
+    };
+
+    private final Runnable mDisconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WearPublisher.this) {
+                // something new came in meanwhile, it will reschedule this after it's sent
+                if (mPending != null) {
+                    return;
+                }
+                mScheduledDisconnect = null;
+            }
+            if (mConnected) {
+                mDataLayer.disconnect();
+                mConnected = false;
+                mDisconnectCount++;
+                mConnectedMillis += System.currentTimeMillis() - mConnectStartMillis;
+                Log.d(LOG_TAG, "disconnected after being idle");
+            }
+        }
+    };
+
+    /**
+     * @return false if the payload should have gone out but couldn't
+     */
+    private boolean send(byte[] payload) {
+        int hash = WeatherPayload.contentHash(payload);
+        if (mLastPublished != null && hash == mLastPublishedHash
+                && WeatherPayload.contentEquals(payload, mLastPublished)) {
+            mSkippedDuplicateCount++;
+            Log.d(LOG_TAG, "forecast unchanged, not sending it again");
+            return true;
+        }
+        if (!mConnected) {
+            if (!mDataLayer.connect()) {
+                Log.e(LOG_TAG, "can't connect to the data layer");
+                return false;
+            }
+            mConnected = true;
+            mConnectCount++;
+            mConnectStartMillis = System.currentTimeMillis();
+        }
+        if (mDataLayer.putDataItem(WatchfaceSyncCommons.KEY_PATH,
+                WatchfaceSyncCommons.KEY_FORECAST, payload)) {
+            mLastPublished = payload;
+            mLastPublishedHash = hash;
+            mPublishCount++;
+            Log.d(LOG_TAG, "sent " + payload.length + " byte forecast");
+            return true;
+        }
+        Log.e(LOG_TAG, "couldn't put the forecast");
+        return false;
+    }
+
+    // Puts a payload that failed back as pending, to be sent again after the backoff delay.
+    // A newer payload published meanwhile replaces it, so this one is dropped.
+    private synchronized void scheduleRetry(byte[] payload) {
+        if (mWorker.isShutdown() || mPending != null) {
+            return;
+        }
+        if (mRetries == MAX_RETRIES) {
+            Log.e(LOG_TAG, "giving up on the forecast after " + mRetries + " retries");
+            mRetries = 0;
+            return;
+        }
+        long delay = mRetryDelayMillis << mRetries;
+        mRetries++;
+        mRetryCount++;
+        mPending = payload;
+        mScheduledSend = mWorker.schedule(mSendRunnable, delay, TimeUnit.MILLISECONDS);
+        Log.d(LOG_TAG, "trying again in " + delay + " ms");
+    }
+
+    private synchronized void scheduleDisconnect() {
+        if (mWorker.isShutdown()) {
+            return;
+        }
+        if (mScheduledDisconnect != null) {
+            mScheduledDisconnect.cancel(false);
+        }
+        mScheduledDisconnect = mWorker.schedule(mDisconnectRunnable, mIdleDisconnectMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Packs the forecast from today on, in the units the user prefers, for the watch.
+     */
+    static WeatherPayload buildPayload(Context context, ForecastSnapshot snapshot) {
+        boolean metric = Utility.isMetric(context);
+        WeatherPayload payload = new WeatherPayload();
+        payload.setUnits(metric ? WeatherPayload.UNITS_METRIC : WeatherPayload.UNITS_IMPERIAL);
+        payload.setTimestamp(System.currentTimeMillis());
+        for (ForecastSnapshot.Day day : snapshot.days) {
+            if (day.date < snapshot.today) {
+                continue;
+            }
+            if (payload.getDayCount() == WeatherPayload.MAX_DAYS) {
+                break;
+            }
+            // Data is stored in Celsius
+            double maxTemp = metric ? day.maxTemp : (day.maxTemp * 1.8) + 32;
+            double minTemp = metric ? day.minTemp : (day.minTemp * 1.8) + 32;
+            payload.addDay(day.date, day.weatherId, maxTemp, minTemp);
+        }
+        return payload;
+    }
+
+    /**
+     * The real Data API, over a GoogleApiClient that's connected and waited on from the
+     * worker thread.
+     */
+    static class GmsDataLayer implements DataLayer {
+
+        private final GoogleApiClient mGoogleApiClient;
+
+        GmsDataLayer(Context context) {
+            mGoogleApiClient = new GoogleApiClient.Builder(context)
+                    .addApi(Wearable.API)
+                    .build();
+        }
+
+        @Override
+        public boolean connect() {
+            if (mGoogleApiClient.isConnected()) {
+                return true;
+            }
+            ConnectionResult result = mGoogleApiClient.blockingConnect(
+                    CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!result.isSuccess()) {
+                Log.e(LOG_TAG, "connection failed: " + result.getErrorCode());
+            }
+            return result.isSuccess();
+        }
+
+        @Override
+        public void disconnect() {
+            mGoogleApiClient.disconnect();
+        }
+
+        @Override
+        public boolean putDataItem(String path, String key, byte[] value) {
+            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(path);
+            putDataMapRequest.getDataMap().putByteArray(key, value);
+            DataApi.DataItemResult result = Wearable.DataApi.putDataItem(mGoogleApiClient,
+                    putDataMapRequest.asPutDataRequest()).await(CONNECT_TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS);
+            return result.getStatus().isSuccess();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.explore.archana.weatherwear;
+
+import android.content.Context;
+import android.support.v4.util.LongSparseArray;
+import android.text.format.Time;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Does the date and temperature formatting behind Utility's helpers without building new
+ * formatters each time.
+ *
+ * Date formatters are made once per pattern and only used with the lock held, since they
+ * aren't thread safe.  The day labels themselves ("Today", "Wednesday", "Mon Dec 22"...)
+ * only depend on the day and on which day it is now, so they're remembered per date.  All
+ * of it is thrown away and rebuilt when the day rolls over, or the locale or time zone
+ * changes.
+ *
+ * Nothing here reads preferences: the units are passed in, from whatever the caller already
+ * read.
+ */
+public class WeatherFormatter {
+
+    private static final String PATTERN_SHORT_DATE = "EEE MMM dd";
+    private static final String PATTERN_DAY_NAME = "EEEE";
+    private static final String PATTERN_MONTH_DAY = "MMMM dd";
+    // Stands in for DateFormat.getDateInstance() among the patterns
+    private static final String PATTERN_DEFAULT_DATE = "";
+
+    // Remembered labels per kind are dropped past this many, it's only ever a couple of weeks
+    private static final int MAX_LABELS = 64;
+
+    private static final int LABEL_FRIENDLY = 0;
+    private static final int LABEL_FRIENDLY_LONG_TODAY = 1;
+    private static final int LABEL_FULL_FRIENDLY = 2;
+    private static final int LABEL_DAY_NAME = 3;
+    private static final int LABEL_MONTH_DAY = 4;
+    private static final int LABEL_DATE = 5;
+    private static final int LABEL_KINDS = 6;
+
+    private static WeatherFormatter sInstance;
+
+    private final Context mContext;
+
+    // Guarded by this
+    private Locale mLocale;
+    private String mTimeZoneId;
+    private int mGmtOffSeconds;
+    private int mCurrentJulianDay;
+    private String mToday;
+    private String mTomorrow;
+    private String mFullFriendlyFormat;
+    private String mTemperatureFormat;
+    @SuppressWarnings("unchecked")
+    private final LongSparseArray<String>[] mLabels = new LongSparseArray[LABEL_KINDS];
+    private final Map<String, DateFormat> mDateFormats = new HashMap<String, DateFormat>();
+    private int mLabelMisses;
+
+    // Temperatures are formatted outside the lock, into a buffer per thread
+    private final ThreadLocal<TemperatureBuffer> mTemperatureBuffers =
+            new ThreadLocal<TemperatureBuffer>() {
+                @Override
+                protected TemperatureBuffer initialValue() {
+                    return new TemperatureBuffer();
+                }
+            };
+
+    public static synchronized WeatherFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    WeatherFormatter(Context context) {
+        mContext = context;
+        for (int i = 0; i < LABEL_KINDS; i++) {
+            mLabels[i] = new LongSparseArray<String>();
+        }
+    }
+
+    /**
+     * See Utility.getFriendlyDayString().
+     */
+    public synchronized String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        checkState();
+        int kind = displayLongToday ? LABEL_FRIENDLY_LONG_TODAY : LABEL_FRIENDLY;
+        String label = mLabels[kind].get(dateInMillis);
+        if (label == null) {
+            int julianDay = Time.getJulianDay(dateInMillis, mGmtOffSeconds);
+            // If the date we're building the String for is today's date, the format
+            // is "Today, June 24"
+            if (displayLongToday && julianDay == mCurrentJulianDay) {
+                label = String.format(mFullFriendlyFormat, mToday,
+                        getFormattedMonthDay(dateInMillis));
+            } else if (julianDay < mCurrentJulianDay + 7) {
+                // If the input date is less than a week in the future, just return the day name.
+                label = getDayName(dateInMillis);
+            } else {
+                // Otherwise, use the form "Mon Jun 3"
+                label = format(PATTERN_SHORT_DATE, dateInMillis);
+            }
+            remember(kind, dateInMillis, label);
+        }
+        return label;
+    }
+
+    /**
+     * See Utility.getFullFriendlyDayString().
+     */
+    public synchronized String getFullFriendlyDayString(long dateInMillis) {
+        checkState();
+        String label = mLabels[LABEL_FULL_FRIENDLY].get(dateInMillis);
+        if (label == null) {
+            label = String.format(mFullFriendlyFormat, getDayName(dateInMillis),
+                    getFormattedMonthDay(dateInMillis));
+            remember(LABEL_FULL_FRIENDLY, dateInMillis, label);
+        }
+        return label;
+    }
+
+    /**
+     * See Utility.getDayName().
+     */
+    public synchronized String getDayName(long dateInMillis) {
+        checkState();
+        String label = mLabels[LABEL_DAY_NAME].get(dateInMillis);
+        if (label == null) {
+            int julianDay = Time.getJulianDay(dateInMillis, mGmtOffSeconds);
+            if (julianDay == mCurrentJulianDay) {
+                label = mToday;
+            } else if (julianDay == mCurrentJulianDay + 1) {
+                label = mTomorrow;
+            } else {
+                // Otherwise, the format is just the day of the week (e.g "Wednesday").
+                label = format(PATTERN_DAY_NAME, dateInMillis);
+            }
+            remember(LABEL_DAY_NAME, dateInMillis, label);
+        }
+        return label;
+    }
+
+    /**
+     * See Utility.getFormattedMonthDay().
+     */
+    public synchronized String getFormattedMonthDay(long dateInMillis) {
+        checkState();
+        String label = mLabels[LABEL_MONTH_DAY].get(dateInMillis);
+        if (label == null) {
+            label = format(PATTERN_MONTH_DAY, dateInMillis);
+            remember(LABEL_MONTH_DAY, dateInMillis, label);
+        }
+        return label;
+    }
+
+    /**
+     * See Utility.formatDate().
+     */
+    public synchronized String formatDate(long dateInMillis) {
+        checkState();
+        String label = mLabels[LABEL_DATE].get(dateInMillis);
+        if (label == null) {
+            label = format(PATTERN_DEFAULT_DATE, dateInMillis);
+            remember(LABEL_DATE, dateInMillis, label);
+        }
+        return label;
+    }
+
+    /**
+     * See Utility.formatTemperature().
+     *
+     * @param temperature in Celsius, as it's stored
+     */
+    public String formatTemperature(double temperature, boolean isMetric) {
+        if (!isMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        String pattern;
+        Locale locale;
+        synchronized (this) {
+            checkState();
+            pattern = mTemperatureFormat;
+            locale = mLocale;
+        }
+        TemperatureBuffer buffer = mTemperatureBuffers.get();
+        buffer.text.setLength(0);
+        // For presentation, assume the user doesn't care about tenths of a degree.
+        buffer.formatter.format(locale, pattern, temperature);
+        return buffer.text.toString();
+    }
+
+    /**
+     * How many labels had to be formatted rather than found already made.
+     */
+    public synchronized int getLabelMisses() {
+        return mLabelMisses;
+    }
+
+    // Called with the lock held, before anything cached is used
+    private void checkState() {
+        long now = System.currentTimeMillis();
+        Locale locale = Locale.getDefault();
+        TimeZone timeZone = TimeZone.getDefault();
+        int gmtOffSeconds = timeZone.getOffset(now) / 1000;
+        int currentJulianDay = Time.getJulianDay(now, gmtOffSeconds);
+        boolean formattersStale = !locale.equals(mLocale)
+                || !timeZone.getID().equals(mTimeZoneId);
+        if (!formattersStale && gmtOffSeconds == mGmtOffSeconds
+                && currentJulianDay == mCurrentJulianDay) {
+            return;
+        }
+
+        if (formattersStale) {
+            mLocale = locale;
+            mTimeZoneId = timeZone.getID();
+            mToday = mContext.getString(R.string.today);
+            mTomorrow = mContext.getString(R.string.tomorrow);
+            mFullFriendlyFormat = mContext.getString(R.string.format_full_friendly_date);
+            mTemperatureFormat = mContext.getString(R.string.format_temperature);
+            mDateFormats.clear();
+        }
+        mGmtOffSeconds = gmtOffSeconds;
+        mCurrentJulianDay = currentJulianDay;
+        for (LongSparseArray<String> labels : mLabels) {
+            labels.clear();
+        }
+    }
+
+    private void remember(int kind, long dateInMillis, String label) {
+        mLabelMisses++;
+        LongSparseArray<String> labels = mLabels[kind];
+        if (labels.size() >= MAX_LABELS) {
+            labels.clear();
+        }
+        labels.put(dateInMillis, label);
+    }
+
+    private String format(String pattern, long dateInMillis) {
+        DateFormat dateFormat = mDateFormats.get(pattern);
+        if (dateFormat == null) {
+            dateFormat = PATTERN_DEFAULT_DATE.equals(pattern)
+                    ? DateFormat.getDateInstance() : new SimpleDateFormat(pattern);
+            mDateFormats.put(pattern, dateFormat);
+        }
+        return dateFormat.format(new Date(dateInMillis));
+    }
+
+    private static class TemperatureBuffer {
+        final StringBuilder text = new StringBuilder();
+        final Formatter formatter = new Formatter(text);
+    }
+}
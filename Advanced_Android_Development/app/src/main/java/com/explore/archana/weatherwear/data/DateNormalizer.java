@@ -0,0 +1,35 @@
+package com.explore.archana.weatherwear.data;
+
+import java.util.TimeZone;
+
+/**
+ * Normalizes dates the same way {@link WeatherContract#normalizeDate(long)} does, to the start
+ * of the day they fall on in the default time zone, but without allocating a
+ * {@link android.text.format.Time} for every call.  Grab one per batch; it holds on to the
+ * time zone that was the default when it was created.
+ */
+public class DateNormalizer {
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final TimeZone mTimeZone;
+
+    public DateNormalizer() {
+        this(TimeZone.getDefault());
+    }
+
+    public DateNormalizer(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    public long normalize(long date) {
+        long localDate = date + mTimeZone.getOffset(date);
+        long localDay = localDate / DAY_IN_MILLIS;
+        if (localDate < 0 && localDate % DAY_IN_MILLIS != 0) {
+            localDay--;
+        }
+        long localMidnight = localDay * DAY_IN_MILLIS;
+        // The offset at midnight can differ from the one at the date itself if daylight saving
+        // starts or ends in between, so look it up again for the instant we're returning.
+        return localMidnight - mTimeZone.getOffset(localMidnight - mTimeZone.getRawOffset());
+    }
+}
@@ -0,0 +1,189 @@
+package com.explore.archana.weatherwear.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.explore.archana.weatherwear.Utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable, in-memory copy of the preferred location's forecast from today onwards.
+ *
+ * The sync adapter builds one right after it writes a new forecast, and everything that
+ * reacts to a sync (widgets, Muzei, the notification and the watch face) reads from it
+ * instead of querying the provider again.  Anyone asking for it when there isn't a current
+ * one, e.g. after the process was restarted or the day rolled over, gets a fresh one loaded
+ * with a single query.
+ */
+public final class ForecastSnapshot {
+
+    private static final String[] SNAPSHOT_COLUMNS = {
+            WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES,
+            WeatherContract.LocationEntry.COLUMN_CITY_NAME,
+            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+    // these indices must match the projection
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_WEATHER_ID = 2;
+    private static final int INDEX_SHORT_DESC = 3;
+    private static final int INDEX_MAX_TEMP = 4;
+    private static final int INDEX_MIN_TEMP = 5;
+    private static final int INDEX_HUMIDITY = 6;
+    private static final int INDEX_PRESSURE = 7;
+    private static final int INDEX_WIND_SPEED = 8;
+    private static final int INDEX_DEGREES = 9;
+    private static final int INDEX_CITY_NAME = 10;
+    private static final int INDEX_COORD_LAT = 11;
+    private static final int INDEX_COORD_LONG = 12;
+
+    private static volatile ForecastSnapshot sCurrent;
+    private static final AtomicInteger sQueryCount = new AtomicInteger();
+
+    /**
+     * One day of the forecast.
+     */
+    public static final class Day {
+        public final long id;
+        public final long date;
+        public final int weatherId;
+        public final String shortDesc;
+        public final double maxTemp;
+        public final double minTemp;
+        public final double humidity;
+        public final double pressure;
+        public final double windSpeed;
+        public final double degrees;
+
+        Day(Cursor cursor) {
+            id = cursor.getLong(INDEX_ID);
+            date = cursor.getLong(INDEX_DATE);
+            weatherId = cursor.getInt(INDEX_WEATHER_ID);
+            shortDesc = cursor.getString(INDEX_SHORT_DESC);
+            maxTemp = cursor.getDouble(INDEX_MAX_TEMP);
+            minTemp = cursor.getDouble(INDEX_MIN_TEMP);
+            humidity = cursor.getDouble(INDEX_HUMIDITY);
+            pressure = cursor.getDouble(INDEX_PRESSURE);
+            windSpeed = cursor.getDouble(INDEX_WIND_SPEED);
+            degrees = cursor.getDouble(INDEX_DEGREES);
+        }
+    }
+
+    public final String locationSetting;
+    public final String cityName;
+    public final double cityLatitude;
+    public final double cityLongitude;
+    // normalized date of the day this snapshot was taken
+    public final long today;
+    public final List<Day> days;
+
+    private ForecastSnapshot(String locationSetting, String cityName, double cityLatitude,
+                             double cityLongitude, long today, List<Day> days) {
+        this.locationSetting = locationSetting;
+        this.cityName = cityName;
+        this.cityLatitude = cityLatitude;
+        this.cityLongitude = cityLongitude;
+        this.today = today;
+        this.days = Collections.unmodifiableList(days);
+    }
+
+    /**
+     * @return the first day of the forecast, which is normally today, or null if there's
+     * no forecast at all.
+     */
+    public Day getFirstDay() {
+        return days.isEmpty() ? null : days.get(0);
+    }
+
+    /**
+     * @return today's forecast, or null if it isn't stored.
+     */
+    public Day getToday() {
+        Day first = getFirstDay();
+        return first != null && first.date == today ? first : null;
+    }
+
+    /**
+     * Returns the current snapshot for the preferred location, loading it if there isn't one
+     * or if it was taken for another location or on another day.
+     */
+    public static ForecastSnapshot get(Context context) {
+        String locationSetting = Utility.getPreferredLocation(context);
+        ForecastSnapshot snapshot = sCurrent;
+        if (snapshot != null
+                && snapshot.locationSetting.equals(locationSetting)
+                && snapshot.today == WeatherContract.normalizeDate(System.currentTimeMillis())) {
+            return snapshot;
+        }
+        return refresh(context);
+    }
+
+    /**
+     * Loads the preferred location's forecast and makes it the current snapshot.  The sync
+     * adapter calls this once after writing, before it wakes up anything that reads it.
+     */
+    public static ForecastSnapshot refresh(Context context) {
+        ForecastSnapshot snapshot = load(context, Utility.getPreferredLocation(context));
+        sCurrent = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Drops the current snapshot, so the next {@link #get(Context)} loads a new one.
+     */
+    public static void invalidate() {
+        sCurrent = null;
+    }
+
+    /**
+     * @return how many provider queries snapshots have made since the process started.
+     */
+    public static int getQueryCount() {
+        return sQueryCount.get();
+    }
+
+    private static ForecastSnapshot load(Context context, String locationSetting) {
+        long now = System.currentTimeMillis();
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, now);
+        sQueryCount.incrementAndGet();
+        Cursor cursor = context.getContentResolver().query(weatherForLocationUri, SNAPSHOT_COLUMNS,
+                null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+
+        List<Day> days = new ArrayList<Day>();
+        String cityName = null;
+        double cityLatitude = 0;
+        double cityLongitude = 0;
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    if (cityName == null) {
+                        cityName = cursor.getString(INDEX_CITY_NAME);
+                        cityLatitude = cursor.getDouble(INDEX_COORD_LAT);
+                        cityLongitude = cursor.getDouble(INDEX_COORD_LONG);
+                    }
+                    days.add(new Day(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return new ForecastSnapshot(locationSetting, cityName, cityLatitude, cityLongitude,
+                WeatherContract.normalizeDate(now), days);
+    }
+}
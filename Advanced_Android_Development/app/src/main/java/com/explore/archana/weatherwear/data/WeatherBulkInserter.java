@@ -0,0 +1,131 @@
+package com.explore.archana.weatherwear.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * Inserts batches of weather rows through a single compiled INSERT statement, binding each
+ * column straight from the ContentValues, instead of having SQLiteDatabase.insert() build and
+ * compile the SQL again for every row.
+ *
+ * Rows that carry columns the statement doesn't know about go through db.insert() as before,
+ * so bulkInsert() accepts exactly what it always has.
+ */
+class WeatherBulkInserter {
+    private static final String LOG_TAG = WeatherBulkInserter.class.getSimpleName();
+
+    private static final String[] COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+    // these indices must match COLUMNS
+    private static final int INDEX_LOC_KEY = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_SHORT_DESC = 2;
+    private static final int INDEX_WEATHER_ID = 3;
+
+    private static final String INSERT_SQL = buildInsertSql();
+
+    private static String buildInsertSql() {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(WeatherContract.WeatherEntry.TABLE_NAME).append(" (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(COLUMNS[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+
+    private WeatherBulkInserter() {
+    }
+
+    /**
+     * Inserts every row, normalizing its date.  The caller owns the transaction.
+     *
+     * @return the number of rows inserted
+     */
+    static int insert(SQLiteDatabase db, ContentValues[] values) {
+        DateNormalizer dateNormalizer = new DateNormalizer();
+        SQLiteStatement statement = db.compileStatement(INSERT_SQL);
+        int returnCount = 0;
+        try {
+            for (ContentValues value : values) {
+                if (!fitsStatement(value)) {
+                    returnCount += insertWithoutStatement(db, value, dateNormalizer) ? 1 : 0;
+                    continue;
+                }
+                for (int i = 0; i < COLUMNS.length; i++) {
+                    bind(statement, i, value.get(COLUMNS[i]), dateNormalizer);
+                }
+                try {
+                    if (statement.executeInsert() != -1) {
+                        returnCount++;
+                    }
+                } catch (SQLException e) {
+                    // db.insert() logs and skips rows it can't write, so we do the same
+                    Log.e(LOG_TAG, "Error inserting " + value, e);
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return returnCount;
+    }
+
+    // True if every column in the row is one the compiled statement binds.  Columns it binds
+    // but the row lacks are bound to null, which fails the NOT NULL constraint just like
+    // db.insert() would.
+    private static boolean fitsStatement(ContentValues value) {
+        int known = 0;
+        for (String column : COLUMNS) {
+            if (value.containsKey(column)) {
+                known++;
+            }
+        }
+        return known == value.size();
+    }
+
+    private static void bind(SQLiteStatement statement, int index, Object value,
+                             DateNormalizer dateNormalizer) {
+        // statement parameters are 1-based
+        int parameter = index + 1;
+        if (value == null) {
+            statement.bindNull(parameter);
+        } else if (index == INDEX_DATE) {
+            long date = value instanceof Number
+                    ? ((Number) value).longValue() : Long.parseLong(value.toString());
+            statement.bindLong(parameter, dateNormalizer.normalize(date));
+        } else if (index == INDEX_SHORT_DESC || !(value instanceof Number)) {
+            // let SQLite apply the column's affinity, as db.insert() would
+            DatabaseUtils.bindObjectToProgram(statement, parameter, value);
+        } else if (index == INDEX_LOC_KEY || index == INDEX_WEATHER_ID) {
+            statement.bindLong(parameter, ((Number) value).longValue());
+        } else {
+            statement.bindDouble(parameter, ((Number) value).doubleValue());
+        }
+    }
+
+    private static boolean insertWithoutStatement(SQLiteDatabase db, ContentValues value,
+                                                  DateNormalizer dateNormalizer) {
+        if (value.containsKey(WeatherContract.WeatherEntry.COLUMN_DATE)) {
+            value.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateNormalizer.normalize(
+                    value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE)));
+        }
+        return db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value) != -1;
+    }
+}
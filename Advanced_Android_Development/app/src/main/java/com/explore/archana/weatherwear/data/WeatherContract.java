@@ -44,6 +44,43 @@ public class WeatherContract {
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
 
+    // Provider method that reports how the weather query cache is doing.  The Bundle it returns
+    // holds the hit and miss counts since the provider started as ints, along with how many
+    // queries of any kind the provider has answered.
+    public static final String METHOD_QUERY_CACHE_STATS = "query_cache_stats";
+    public static final String RESULT_CACHE_HITS = "cache_hits";
+    public static final String RESULT_CACHE_MISSES = "cache_misses";
+    public static final String RESULT_QUERY_COUNT = "query_count";
+
+    // Add this query parameter to a weather or location insert URI (see buildUpsertUri()) to
+    // have the insert leave an identical stored row alone instead of replacing or failing on
+    // it.  This is how the sync adapter writes inside an applyBatch.  The returned row URI
+    // carries the same parameter, set to one of the RESULT_ values below.
+    public static final String QUERY_PARAMETER_UPSERT = "upsert";
+    public static final String RESULT_INSERTED = "inserted";
+    public static final String RESULT_UPDATED = "updated";
+    public static final String RESULT_UNCHANGED = "unchanged";
+
+    public static Uri buildUpsertUri(Uri uri) {
+        return uri.buildUpon().appendQueryParameter(QUERY_PARAMETER_UPSERT, "true").build();
+    }
+
+    public static boolean isUpsertUri(Uri uri) {
+        return uri.getQueryParameter(QUERY_PARAMETER_UPSERT) != null;
+    }
+
+    static Uri buildUpsertResultUri(Uri rowUri, String result) {
+        return rowUri.buildUpon().appendQueryParameter(QUERY_PARAMETER_UPSERT, result).build();
+    }
+
+    /**
+     * @return RESULT_INSERTED, RESULT_UPDATED or RESULT_UNCHANGED for a row URI returned by an
+     * upsert, or null if the URI didn't come from one.
+     */
+    public static String getUpsertResultFromUri(Uri rowUri) {
+        return rowUri.getQueryParameter(QUERY_PARAMETER_UPSERT);
+    }
+
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
@@ -15,9 +15,12 @@
  */
 package com.explore.archana.weatherwear.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 /**
  * Manages a local database for weather data.
@@ -25,12 +28,71 @@ import android.database.sqlite.SQLiteOpenHelper;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // Version 3 added the weather_location_date index.
+    private static final int DATABASE_VERSION = 3;
 
     public static final String DATABASE_NAME = "weather.db";
 
+    // Serves the forecast query every screen, widget and Muzei runs: the weather of one location
+    // from a date onwards, in date order.  It carries the columns those screens list, so SQLite
+    // can answer from the index without touching the table.  The history prune (date <= ?)
+    // doesn't need one of its own; the UNIQUE (date, location_id) constraint's index already
+    // starts with the date.
+    public static final String INDEX_WEATHER_LOCATION_DATE = "weather_location_date";
+
+    // With write-ahead logging, SQLite checks the log back into the database on its own once it
+    // grows past this many pages.  The provider also asks for a checkpoint after each sync, so
+    // this only kicks in for unusually large writes.
+    static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+    // Once checkpointed, the log file is truncated back to at most this size.
+    static final long JOURNAL_SIZE_LIMIT_BYTES = 512 * 1024;
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // Write-ahead logging lets the widgets, Muzei, the watch face and the UI keep reading
+        // while the sync adapter writes, instead of waiting for its transaction to finish.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (db.isReadOnly()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            enableWriteAheadLogging(db);
+        }
+        pragma(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES);
+        pragma(db, "PRAGMA journal_size_limit=" + JOURNAL_SIZE_LIMIT_BYTES);
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void enableWriteAheadLogging(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    /**
+     * Copies what's in the write-ahead log back into the database without waiting for readers,
+     * so the log doesn't keep growing between syncs.  Does nothing without write-ahead logging.
+     */
+    static void checkpoint(SQLiteDatabase db) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            pragma(db, "PRAGMA wal_checkpoint(PASSIVE)");
+        }
+    }
+
+    // Pragmas that return a row have to be run as a query on older versions of Android
+    private static void pragma(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
@@ -78,18 +140,36 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        createWeatherLocationDateIndex(sqLiteDatabase);
+    }
+
+    private static void createWeatherLocationDateIndex(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_WEATHER_LOCATION_DATE +
+                " ON " + WeatherContract.WeatherEntry.TABLE_NAME + " (" +
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + ", " +
+                WeatherContract.WeatherEntry.COLUMN_DATE + ", " +
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC + ", " +
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP + ");");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
+        // Each step takes the schema from one version to the next without losing the stored
+        // weather, so a user who skipped a few releases still opens the app with a forecast.
         // Note that this only fires if you change the version number for your database.
         // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherContract.LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherContract.WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        if (oldVersion < 2) {
+            // There's no record of what version 1 looked like, and this database is only a
+            // cache for online data, so start over.
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherContract.LocationEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherContract.WeatherEntry.TABLE_NAME);
+            onCreate(sqLiteDatabase);
+            return;
+        }
+        if (oldVersion < 3) {
+            createWeatherLocationDateIndex(sqLiteDatabase);
+        }
     }
 }
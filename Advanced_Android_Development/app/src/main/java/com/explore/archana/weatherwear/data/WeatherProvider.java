@@ -17,24 +17,81 @@ package com.explore.archana.weatherwear.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WeatherProvider extends ContentProvider {
 
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
+    // Recent weather-by-location results; null before Honeycomb, where they aren't cached
+    private WeatherQueryCache mQueryCache;
+    // How many column values the cache may hold, a few screens' worth of forecasts
+    private static final int QUERY_CACHE_MAX_VALUES = 4096;
+    // Every query answered, cached or not
+    private final AtomicInteger mQueryCount = new AtomicInteger();
 
     public static final int WEATHER = 100;
     public static final int WEATHER_WITH_LOCATION = 101;
     public static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     public static final int LOCATION = 300;
 
+    // Set while applyBatch() runs on this thread
+    private final ThreadLocal<BatchState> mBatch = new ThreadLocal<BatchState>();
+
+    /**
+     * What an applyBatch() has to remember between its operations.
+     */
+    private static class BatchState {
+        // held back until the batch commits
+        final Set<Uri> changedUris = new LinkedHashSet<Uri>();
+        // stored weather rows by weatherKey(), for each location upserted so far
+        final Map<String, ContentValues> existingWeather = new HashMap<String, ContentValues>();
+        final Set<Long> loadedLocations = new HashSet<Long>();
+        // whose cached queries to drop once the batch is done
+        final Set<Long> changedLocationIds = new HashSet<Long>();
+        final Set<String> changedLocationSettings = new HashSet<String>();
+        boolean allLocationsChanged;
+    }
+
+    // The weather columns, in the types they're stored as, for comparing against incoming rows
+    private static final String[] WEATHER_ROW_COLUMNS = {
+            WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+    // these indices must match the projection; the integer columns come first
+    private static final int LAST_INTEGER_COLUMN = 3;
+    private static final int INDEX_SHORT_DESC = 4;
+
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
@@ -140,6 +197,9 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mOpenHelper = new WeatherDbHelper(getContext());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            mQueryCache = new WeatherQueryCache(QUERY_CACHE_MAX_VALUES);
+        }
         return true;
     }
 
@@ -174,17 +234,35 @@ public class WeatherProvider extends ContentProvider {
                         String sortOrder) {
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
+        mQueryCount.incrementAndGet();
         Cursor retCursor;
-        switch (sUriMatcher.match(uri)) {
+        final int match = sUriMatcher.match(uri);
+        switch (match) {
             // "weather/*/*"
             case WEATHER_WITH_LOCATION_AND_DATE:
-            {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
-                break;
-            }
             // "weather/*"
             case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                // These are the ones every screen keeps asking for, so they go through the cache
+                String cacheKey = null;
+                long cacheGeneration = 0;
+                if (mQueryCache != null) {
+                    cacheKey = WeatherQueryCache.buildKey(match, uri.toString(), projection, sortOrder);
+                    retCursor = mQueryCache.get(cacheKey);
+                    if (retCursor != null) {
+                        break;
+                    }
+                    cacheGeneration = mQueryCache.getGeneration();
+                }
+                if (match == WEATHER_WITH_LOCATION_AND_DATE) {
+                    retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
+                } else {
+                    retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                }
+                if (mQueryCache != null) {
+                    retCursor = mQueryCache.put(cacheKey,
+                            WeatherContract.WeatherEntry.getLocationSettingFromUri(uri),
+                            cacheGeneration, retCursor);
+                }
                 break;
             }
             // "weather"
@@ -230,28 +308,40 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         Uri returnUri;
 
+        startWrite();
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
+                if (WeatherContract.isUpsertUri(uri)) {
+                    return upsertWeather(db, values);
+                }
                 long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                locationsChanged(db, Collections.singleton(
+                        values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY)));
                 break;
             }
             case LOCATION: {
+                if (WeatherContract.isUpsertUri(uri)) {
+                    return upsertLocation(db, values);
+                }
                 long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
                 if ( _id > 0 )
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                // a query for it may have been cached before it existed
+                locationSettingChanged(
+                        values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING));
                 break;
             }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return returnUri;
     }
 
@@ -262,21 +352,31 @@ public class WeatherProvider extends ContentProvider {
         int rowsDeleted;
         // this makes delete all rows return the number of rows deleted
         if ( null == selection ) selection = "1";
+        startWrite();
         switch (match) {
-            case WEATHER:
+            case WEATHER: {
+                Set<Long> locationIds = findWeatherLocationIds(db, selection, selectionArgs);
                 rowsDeleted = db.delete(
                         WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    locationsChanged(db, locationIds);
+                }
                 break;
+            }
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    allLocationsChanged();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            forgetExistingWeather();
+            notifyChange(uri);
         }
         return rowsDeleted;
     }
@@ -296,21 +396,35 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         int rowsUpdated;
 
+        startWrite();
         switch (match) {
-            case WEATHER:
+            case WEATHER: {
                 normalizeDate(values);
+                Set<Long> locationIds = findWeatherLocationIds(db, selection, selectionArgs);
                 rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                if (rowsUpdated != 0) {
+                    // rows may also have moved to another location
+                    if (values.containsKey(WeatherContract.WeatherEntry.COLUMN_LOC_KEY)) {
+                        locationIds.add(values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
+                    }
+                    locationsChanged(db, locationIds);
+                }
                 break;
+            }
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                if (rowsUpdated != 0) {
+                    allLocationsChanged();
+                }
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            forgetExistingWeather();
+            notifyChange(uri);
         }
         return rowsUpdated;
     }
@@ -321,27 +435,350 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
+                startWrite();
                 db.beginTransaction();
                 int returnCount = 0;
                 try {
-                    for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
-                        }
-                    }
+                    // One compiled statement for the whole batch, rather than one per row
+                    returnCount = WeatherBulkInserter.insert(db, values);
                     db.setTransactionSuccessful();
                 } finally {
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
+                Set<Long> locationIds = new HashSet<Long>();
+                for (ContentValues value : values) {
+                    Long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                    if (locationId != null) {
+                        locationIds.add(locationId);
+                    }
+                }
+                locationsChanged(db, locationIds);
+                forgetExistingWeather();
+                notifyChange(uri);
+                if (mBatch.get() == null) {
+                    WeatherDbHelper.checkpoint(db);
+                }
                 return returnCount;
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    /**
+     * Applies the operations in a single transaction, so readers see all of them or none, and
+     * sends one change notification once it has committed.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        BatchState batch = new BatchState();
+        startWrite();
+        mBatch.set(batch);
+        ContentProviderResult[] results;
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatch.remove();
+            // Drop what the batch touched before anyone hears about it and queries again.  On
+            // a rollback nothing changed, but dropping a little too much does no harm.
+            if (batch.allLocationsChanged) {
+                allLocationsChanged();
+            } else {
+                locationsChanged(db, batch.changedLocationIds);
+                invalidateQueries(batch.changedLocationSettings);
+            }
+        }
+
+        if (batch.changedUris.size() == 1) {
+            getContext().getContentResolver().notifyChange(batch.changedUris.iterator().next(), null);
+        } else if (batch.changedUris.size() > 1) {
+            // Notifying the root reaches observers of every table below it
+            getContext().getContentResolver().notifyChange(WeatherContract.BASE_CONTENT_URI, null);
+        }
+        // A batch is a whole sync's worth of writes, so this is a good time to fold the
+        // write-ahead log back into the database.
+        WeatherDbHelper.checkpoint(db);
+        return results;
+    }
+
+    // Tells observers about a change now, or when the applyBatch() running on this thread commits.
+    private void notifyChange(Uri uri) {
+        BatchState batch = mBatch.get();
+        if (batch != null) {
+            batch.changedUris.add(uri.buildUpon().clearQuery().build());
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    // Anything but an upsert may have changed the weather rows a batch has already read.
+    private void forgetExistingWeather() {
+        BatchState batch = mBatch.get();
+        if (batch != null) {
+            batch.existingWeather.clear();
+            batch.loadedLocations.clear();
+        }
+    }
+
+    // Call before writing, so queries running alongside don't cache what they read.  A batch
+    // calls it once for all of its operations.
+    private void startWrite() {
+        if (mQueryCache != null && mBatch.get() == null) {
+            mQueryCache.startWrite();
+        }
+    }
+
+    // Drops the cached queries of these locations, now or when the running batch finishes.
+    private void locationsChanged(SQLiteDatabase db, Set<Long> locationIds) {
+        if (mQueryCache == null || locationIds.isEmpty()) {
+            return;
+        }
+        BatchState batch = mBatch.get();
+        if (batch != null) {
+            batch.changedLocationIds.addAll(locationIds);
+            return;
+        }
+
+        // Cached queries are by location setting, so look those up
+        StringBuilder selection = new StringBuilder(WeatherContract.LocationEntry._ID).append(" IN (");
+        String[] selectionArgs = new String[locationIds.size()];
+        int i = 0;
+        for (Long locationId : locationIds) {
+            selection.append(i == 0 ? "?" : ",?");
+            selectionArgs[i++] = String.valueOf(locationId);
+        }
+        selection.append(')');
+        Set<String> locationSettings = new HashSet<String>();
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                selection.toString(), selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locationSettings.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        invalidateQueries(locationSettings);
+    }
+
+    private void locationSettingChanged(String locationSetting) {
+        BatchState batch = mBatch.get();
+        if (batch != null) {
+            batch.changedLocationSettings.add(locationSetting);
+        } else {
+            invalidateQueries(Collections.singleton(locationSetting));
+        }
+    }
+
+    private void allLocationsChanged() {
+        BatchState batch = mBatch.get();
+        if (batch != null) {
+            batch.allLocationsChanged = true;
+        } else if (mQueryCache != null) {
+            mQueryCache.invalidateAll();
+        }
+    }
+
+    private void invalidateQueries(Set<String> locationSettings) {
+        if (mQueryCache != null && !locationSettings.isEmpty()) {
+            mQueryCache.invalidate(locationSettings);
+        }
+    }
+
+    // The locations whose weather rows match the selection, so an update or delete can drop
+    // exactly their cached queries.
+    private Set<Long> findWeatherLocationIds(SQLiteDatabase db, String selection,
+                                             String[] selectionArgs) {
+        Set<Long> locationIds = new HashSet<Long>();
+        if (mQueryCache == null) {
+            return locationIds;
+        }
+        Cursor cursor = db.query(true, WeatherContract.WeatherEntry.TABLE_NAME,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_LOC_KEY},
+                selection, selectionArgs, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locationIds.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return locationIds;
+    }
+
+    /**
+     * Inserts on an upsert URI: compares the row against what's already stored for the same
+     * (date, location_id), inserting it if it's new, updating it if its values differ and
+     * leaving it alone if they're the same.  Inside applyBatch() the stored rows of each
+     * location are only read once.
+     *
+     * @return the row's URI, tagged with what happened to it
+     */
+    private Uri upsertWeather(SQLiteDatabase db, ContentValues value) {
+        long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+        BatchState batch = mBatch.get();
+        Map<String, ContentValues> existing;
+        if (batch != null) {
+            existing = batch.existingWeather;
+            if (batch.loadedLocations.add(locationId)) {
+                loadExistingWeather(db, locationId, existing);
+            }
+        } else {
+            existing = new HashMap<String, ContentValues>();
+            loadExistingWeather(db, locationId, existing);
+        }
+
+        String key = weatherKey(locationId, value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+        ContentValues stored = existing.get(key);
+        long _id;
+        String result;
+        if (stored == null) {
+            _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+            if (_id <= 0) {
+                throw new SQLException("Failed to insert row into " + WeatherContract.WeatherEntry.CONTENT_URI);
+            }
+            result = WeatherContract.RESULT_INSERTED;
+        } else {
+            _id = stored.getAsLong(WeatherContract.WeatherEntry._ID);
+            if (sameWeather(value, stored)) {
+                return WeatherContract.buildUpsertResultUri(
+                        WeatherContract.WeatherEntry.buildWeatherUri(_id), WeatherContract.RESULT_UNCHANGED);
+            }
+            db.update(WeatherContract.WeatherEntry.TABLE_NAME, value,
+                    WeatherContract.WeatherEntry._ID + " = ?", new String[]{Long.toString(_id)});
+            result = WeatherContract.RESULT_UPDATED;
+        }
+
+        ContentValues written = new ContentValues(value);
+        written.put(WeatherContract.WeatherEntry._ID, _id);
+        existing.put(key, written);
+        locationsChanged(db, Collections.singleton(locationId));
+        notifyChange(WeatherContract.WeatherEntry.CONTENT_URI);
+        return WeatherContract.buildUpsertResultUri(
+                WeatherContract.WeatherEntry.buildWeatherUri(_id), result);
+    }
+
+    /**
+     * Inserts the location unless one with the same location setting is already stored, in
+     * which case that one is kept as it is.
+     *
+     * @return the row's URI, tagged with what happened to it
+     */
+    private Uri upsertLocation(SQLiteDatabase db, ContentValues values) {
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING)},
+                null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                return WeatherContract.buildUpsertResultUri(
+                        WeatherContract.LocationEntry.buildLocationUri(cursor.getLong(0)),
+                        WeatherContract.RESULT_UNCHANGED);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+        if (_id <= 0) {
+            throw new SQLException("Failed to insert row into " + WeatherContract.LocationEntry.CONTENT_URI);
+        }
+        locationSettingChanged(
+                values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING));
+        notifyChange(WeatherContract.LocationEntry.CONTENT_URI);
+        return WeatherContract.buildUpsertResultUri(
+                WeatherContract.LocationEntry.buildLocationUri(_id), WeatherContract.RESULT_INSERTED);
+    }
+
+    @Override
+    @TargetApi(11)
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_QUERY_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(WeatherContract.RESULT_QUERY_COUNT, mQueryCount.get());
+            if (mQueryCache != null) {
+                result.putInt(WeatherContract.RESULT_CACHE_HITS, mQueryCache.getHitCount());
+                result.putInt(WeatherContract.RESULT_CACHE_MISSES, mQueryCache.getMissCount());
+            }
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    // Reads every stored row of one location into existing, keyed by weatherKey().
+    private void loadExistingWeather(SQLiteDatabase db, long locationId,
+                                     Map<String, ContentValues> existing) {
+        readExistingWeather(db, WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ?",
+                new String[]{Long.toString(locationId)}, existing);
+    }
+
+    private void readExistingWeather(SQLiteDatabase db, String selection, String[] selectionArgs,
+                                     Map<String, ContentValues> existing) {
+        Cursor cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME, WEATHER_ROW_COLUMNS,
+                selection, selectionArgs, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ContentValues stored = readWeatherRow(cursor);
+                existing.put(weatherKey(
+                        stored.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY),
+                        stored.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE)), stored);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Like DatabaseUtils.cursorRowToContentValues, but keeps numbers as numbers so REAL
+    // columns compare exactly instead of through their text form.
+    private static ContentValues readWeatherRow(Cursor cursor) {
+        ContentValues row = new ContentValues();
+        for (int i = 0; i < WEATHER_ROW_COLUMNS.length; i++) {
+            if (i <= LAST_INTEGER_COLUMN) {
+                row.put(WEATHER_ROW_COLUMNS[i], cursor.getLong(i));
+            } else if (i == INDEX_SHORT_DESC) {
+                row.put(WEATHER_ROW_COLUMNS[i], cursor.getString(i));
+            } else {
+                row.put(WEATHER_ROW_COLUMNS[i], cursor.getDouble(i));
+            }
+        }
+        return row;
+    }
+
+    private static String weatherKey(long locationId, long date) {
+        return locationId + ":" + date;
+    }
+
+    // True if every incoming column matches the stored row.  Integers and reals compare by
+    // value, so an int humidity matches the REAL it was stored as.
+    private static boolean sameWeather(ContentValues incoming, ContentValues stored) {
+        for (String column : incoming.keySet()) {
+            if (WeatherContract.WeatherEntry._ID.equals(column)) {
+                continue;
+            }
+            Object value = incoming.get(column);
+            Object storedValue = stored.get(column);
+            if (value == null || storedValue == null) {
+                if (value != storedValue) {
+                    return false;
+                }
+            } else if (value instanceof Number && storedValue instanceof Number) {
+                if (Double.compare(((Number) value).doubleValue(),
+                        ((Number) storedValue).doubleValue()) != 0) {
+                    return false;
+                }
+            } else if (!value.toString().equals(storedValue.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
@@ -0,0 +1,176 @@
+package com.explore.archana.weatherwear.data;
+
+import android.annotation.TargetApi;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps the results of recent weather-by-location queries in memory, so the forecast list,
+ * the widgets, Muzei, the notification and the watch face don't all go back to SQLite for
+ * the same rows between syncs.
+ *
+ * Each result is stored as its column names and one flat array of values, and handed out as
+ * a fresh MatrixCursor.  Every entry belongs to one location setting; the provider drops the
+ * entries of the locations a write touched once that write has committed.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+class WeatherQueryCache {
+
+    private static class Entry {
+        final String locationSetting;
+        final String[] columnNames;
+        // row after row, columnNames.length values each
+        final Object[] values;
+
+        Entry(String locationSetting, String[] columnNames, Object[] values) {
+            this.locationSetting = locationSetting;
+            this.columnNames = columnNames;
+            this.values = values;
+        }
+
+        int getRowCount() {
+            return columnNames.length == 0 ? 0 : values.length / columnNames.length;
+        }
+    }
+
+    private final LruCache<String, Entry> mEntries;
+    // Bumped whenever a write starts or is invalidated, so a query that read while it was
+    // going on doesn't put what it saw into the cache afterwards.
+    private long mGeneration;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param maxValues How many column values all the cached results may hold together.
+     */
+    WeatherQueryCache(int maxValues) {
+        mEntries = new LruCache<String, Entry>(maxValues) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                // count the row itself too, so empty results still take up room
+                return entry.values.length + 1;
+            }
+        };
+    }
+
+    static String buildKey(int match, String uri, String[] projection, String sortOrder) {
+        return match + "|" + uri + "|" + Arrays.toString(projection) + "|" + sortOrder;
+    }
+
+    /**
+     * @return a new cursor over the cached result, or null if there isn't one.
+     */
+    synchronized Cursor get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return toCursor(entry);
+    }
+
+    /**
+     * Call before running a query whose result may be handed to {@link #put}.
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Reads the whole result into the cache and closes it.  If a write started or was
+     * invalidated since the query began, the result is handed back but not kept.
+     *
+     * @return a cursor over the same rows
+     */
+    Cursor put(String key, String locationSetting, long generation, Cursor result) {
+        Entry entry;
+        try {
+            entry = read(locationSetting, result);
+        } finally {
+            result.close();
+        }
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(key, entry);
+            }
+        }
+        return toCursor(entry);
+    }
+
+    /**
+     * Marks the start of a write.  Queries already running won't be cached.
+     */
+    synchronized void startWrite() {
+        mGeneration++;
+    }
+
+    synchronized void invalidate(Collection<String> locationSettings) {
+        mGeneration++;
+        for (Map.Entry<String, Entry> cached : mEntries.snapshot().entrySet()) {
+            if (locationSettings.contains(cached.getValue().locationSetting)) {
+                mEntries.remove(cached.getKey());
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        mGeneration++;
+        mEntries.evictAll();
+    }
+
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    private static Entry read(String locationSetting, Cursor cursor) {
+        String[] columnNames = cursor.getColumnNames();
+        int columnCount = columnNames.length;
+        Object[] values = new Object[cursor.getCount() * columnCount];
+        int i = 0;
+        while (cursor.moveToNext()) {
+            for (int column = 0; column < columnCount; column++) {
+                switch (cursor.getType(column)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        values[i++] = cursor.getLong(column);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        values[i++] = cursor.getDouble(column);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        values[i++] = cursor.getBlob(column);
+                        break;
+                    case Cursor.FIELD_TYPE_NULL:
+                        values[i++] = null;
+                        break;
+                    default:
+                        values[i++] = cursor.getString(column);
+                }
+            }
+        }
+        return new Entry(locationSetting, columnNames, values);
+    }
+
+    private static Cursor toCursor(Entry entry) {
+        int rowCount = entry.getRowCount();
+        int columnCount = entry.columnNames.length;
+        MatrixCursor cursor = new MatrixCursor(entry.columnNames, rowCount);
+        // addRow() copies the values, so one array does for every row
+        Object[] values = new Object[columnCount];
+        for (int row = 0; row < rowCount; row++) {
+            System.arraycopy(entry.values, row * columnCount, values, 0, columnCount);
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+}
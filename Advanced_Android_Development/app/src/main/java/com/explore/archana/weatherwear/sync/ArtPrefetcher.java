@@ -0,0 +1,315 @@
+package com.explore.archana.weatherwear.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GenericLoaderFactory;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.HttpUrlGlideUrlLoader;
+import com.bumptech.glide.request.target.Target;
+import com.example.WeatherConditions;
+import com.explore.archana.weatherwear.Settings;
+import com.explore.archana.weatherwear.Utility;
+import com.explore.archana.weatherwear.data.ForecastSnapshot;
+
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Downloads the art pack's pictures for the coming forecast into Glide's disk cache once a
+ * sync has written it, so the list, the detail view, the widget and the notification find
+ * them there instead of waiting on the network the first time they're shown.
+ *
+ * Every condition in a bucket has the same picture, so each is asked for once per sync however
+ * many days have it, and never while a download of it is already going.  Whether a picture is
+ * already cached is left to Glide: asking it for one it has is only a disk cache lookup.
+ * Glide keeps the original picture and each surface's sized copy is made from it, so one
+ * download covers every size; the surfaces load with DiskCacheStrategy.ALL so that they look
+ * for the original.
+ *
+ * For the hit rate, the surfaces tell us every picture they load, and Glide's URL loader is
+ * wrapped so we hear about every picture it actually has to fetch.  A fetch the prefetch didn't
+ * start is a load that waited on the network.
+ */
+public class ArtPrefetcher {
+
+    public static final String LOG_TAG = ArtPrefetcher.class.getSimpleName();
+
+    // The forecast is 14 days long
+    static final int PREFETCH_DAYS = 14;
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+
+    /**
+     * Puts a picture in the disk cache.  Blocks until it's done.
+     */
+    public interface Downloader {
+        /**
+         * @return true if the picture is now in the cache
+         */
+        boolean download(String url);
+    }
+
+    private static ArtPrefetcher sInstance;
+
+    private final Downloader mDownloader;
+    private final int mMaxConcurrentDownloads;
+
+    // Guarded by this
+    // Made on the first prefetch, so using the prefetcher from the UI doesn't start threads
+    private ExecutorService mWorkers;
+    private final Set<String> mInFlight = new HashSet<String>();
+    private int mDownloadCount;
+    private int mFailedCount;
+    private int mPrefetchFetchCount;
+    private int mUseCount;
+    private int mUseFetchCount;
+
+    public static synchronized ArtPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new ArtPrefetcher(new GlideDownloader(appContext),
+                    MAX_CONCURRENT_DOWNLOADS);
+            Glide.get(appContext).register(GlideUrl.class, InputStream.class,
+                    new CountingUrlLoader.Factory(sInstance));
+        }
+        return sInstance;
+    }
+
+    public ArtPrefetcher(Downloader downloader, int maxConcurrentDownloads) {
+        mDownloader = downloader;
+        mMaxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * Queues the pictures for the next PREFETCH_DAYS of the current forecast.  Returns
+     * straight away; nothing to do when using the built in art.
+     */
+    public void prefetchForecast(Context context) {
+        Settings settings = Settings.get(context);
+        if (settings.usingLocalGraphics) {
+            return;
+        }
+        List<ForecastSnapshot.Day> days = ForecastSnapshot.get(context).days;
+        int[] weatherIds = new int[Math.min(days.size(), PREFETCH_DAYS)];
+        for (int i = 0; i < weatherIds.length; i++) {
+            weatherIds[i] = days.get(i).weatherId;
+        }
+        prefetch(settings.artPack, weatherIds);
+    }
+
+    /**
+     * Queues the pictures for the given conditions, one per bucket, skipping any already on
+     * their way.
+     *
+     * @return how many downloads were queued
+     */
+    public synchronized int prefetch(String artPack, int[] weatherIds) {
+        Log.d(LOG_TAG, getSummary());
+        if (mWorkers == null) {
+            mWorkers = Executors.newFixedThreadPool(mMaxConcurrentDownloads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, LOG_TAG);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        boolean[] seenBuckets = new boolean[WeatherConditions.BUCKET_COUNT];
+        int queued = 0;
+        for (int weatherId : weatherIds) {
+            int bucket = WeatherConditions.getBucket(weatherId);
+            if (bucket == WeatherConditions.BUCKET_UNKNOWN || seenBuckets[bucket]) {
+                continue;
+            }
+            seenBuckets[bucket] = true;
+            final String url = Utility.getArtUrlForWeatherCondition(artPack, weatherId);
+            if (!mInFlight.add(url)) {
+                continue;
+            }
+            mWorkers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    onDownloaded(url, mDownloader.download(url));
+                }
+            });
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * Call whenever a surface starts loading an art pack picture.  Only counts it, so it's
+     * fine on the UI thread.
+     */
+    public synchronized void recordUse(String url) {
+        if (url != null) {
+            mUseCount++;
+        }
+    }
+
+    /**
+     * Called when Glide has to fetch a picture because it isn't cached.
+     */
+    public synchronized void recordFetch(String url) {
+        if (mInFlight.contains(url)) {
+            mPrefetchFetchCount++;
+        } else {
+            mUseFetchCount++;
+        }
+    }
+
+    public synchronized int getDownloadCount() {
+        return mDownloadCount;
+    }
+
+    public synchronized int getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * How many of the prefetch's downloads weren't already in Glide's cache.
+     */
+    public synchronized int getPrefetchFetchCount() {
+        return mPrefetchFetchCount;
+    }
+
+    public synchronized int getUseCount() {
+        return mUseCount;
+    }
+
+    /**
+     * How many pictures Glide fetched for the surfaces, i.e. how many times they waited.
+     */
+    public synchronized int getUseFetchCount() {
+        return mUseFetchCount;
+    }
+
+    /**
+     * @return the share of loaded pictures that didn't need fetching, 0 to 1, or -1 if none
+     * have been loaded yet
+     */
+    public synchronized float getHitRate() {
+        if (mUseCount == 0) {
+            return -1;
+        }
+        return Math.max(0, (float) (mUseCount - mUseFetchCount) / mUseCount);
+    }
+
+    public synchronized String getSummary() {
+        float hitRate = getHitRate();
+        return "Art: " + mUseCount + " loads, "
+                + (hitRate < 0 ? "none" : Math.round(hitRate * 100) + "%") + " from cache; "
+                + mDownloadCount + " prefetched (" + mPrefetchFetchCount + " fetched), "
+                + mFailedCount + " failed";
+    }
+
+    private synchronized void onDownloaded(String url, boolean cached) {
+        mInFlight.remove(url);
+        if (cached) {
+            mDownloadCount++;
+        } else {
+            mFailedCount++;
+        }
+    }
+
+    /**
+     * Downloads the original picture into Glide's disk cache, without decoding it.  If it's
+     * already there, that's all Glide looks at.
+     */
+    static class GlideDownloader implements Downloader {
+        private final Context mContext;
+
+        GlideDownloader(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public boolean download(String url) {
+            try {
+                Glide.with(mContext)
+                        .load(url)
+                        .downloadOnly(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL)
+                        .get();
+                return true;
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error prefetching " + url, e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Glide's own URL loader, telling the prefetcher whenever it really goes to the network.
+     * Glide only asks a fetcher for data once its caches have missed.
+     */
+    static class CountingUrlLoader implements ModelLoader<GlideUrl, InputStream> {
+        private final ModelLoader<GlideUrl, InputStream> mLoader;
+        private final ArtPrefetcher mPrefetcher;
+
+        CountingUrlLoader(ModelLoader<GlideUrl, InputStream> loader, ArtPrefetcher prefetcher) {
+            mLoader = loader;
+            mPrefetcher = prefetcher;
+        }
+
+        @Override
+        public DataFetcher<InputStream> getResourceFetcher(final GlideUrl model, int width,
+                                                           int height) {
+            final DataFetcher<InputStream> fetcher = mLoader.getResourceFetcher(model, width,
+                    height);
+            return new DataFetcher<InputStream>() {
+                @Override
+                public InputStream loadData(Priority priority) throws Exception {
+                    mPrefetcher.recordFetch(model.toString());
+                    return fetcher.loadData(priority);
+                }
+
+                @Override
+                public void cleanup() {
+                    fetcher.cleanup();
+                }
+
+                @Override
+                public String getId() {
+                    return fetcher.getId();
+                }
+
+                @Override
+                public void cancel() {
+                    fetcher.cancel();
+                }
+            };
+        }
+
+        static class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
+            private final HttpUrlGlideUrlLoader.Factory mFactory = new HttpUrlGlideUrlLoader.Factory();
+            private final ArtPrefetcher mPrefetcher;
+
+            Factory(ArtPrefetcher prefetcher) {
+                mPrefetcher = prefetcher;
+            }
+
+            @Override
+            public ModelLoader<GlideUrl, InputStream> build(Context context,
+                                                            GenericLoaderFactory factories) {
+                return new CountingUrlLoader(mFactory.build(context, factories), mPrefetcher);
+            }
+
+            @Override
+            public void teardown() {
+                mFactory.teardown();
+            }
+        }
+    }
+}
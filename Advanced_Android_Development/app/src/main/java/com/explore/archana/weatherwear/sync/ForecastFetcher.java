@@ -0,0 +1,197 @@
+package com.explore.archana.weatherwear.sync;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.BuildConfig;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads and parses the forecast for a single location.  It never touches the database,
+ * so several of these can run at once during a multi-location sync; the sync adapter writes
+ * all of their results afterwards.
+ */
+public class ForecastFetcher implements Callable<ForecastFetcher.Result> {
+    public static final String LOG_TAG = ForecastFetcher.class.getSimpleName();
+
+    // Construct the URL for the OpenWeatherMap query
+    // Possible parameters are avaiable at OWM's forecast API page, at
+    // http://openweathermap.org/API#forecast
+    private static final String FORECAST_BASE_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily?";
+    private static final String QUERY_PARAM = "q";
+    private static final String LAT_PARAM = "lat";
+    private static final String LON_PARAM = "lon";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+    private static final String APPID_PARAM = "APPID";
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+    private static final int NUM_DAYS = 14;
+
+    /**
+     * What happened when fetching one location.
+     */
+    public static class Result {
+        public final String locationSetting;
+        public final String requestKey;
+        @SunshineSyncAdapter.LocationStatus
+        public int status = SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN;
+        // null unless a new forecast was downloaded and parsed
+        public ForecastJsonParser.Forecast forecast;
+        public boolean notModified;
+        public String etag;
+        public String lastModified;
+
+        Result(String locationSetting, String requestKey) {
+            this.locationSetting = locationSetting;
+            this.requestKey = requestKey;
+        }
+    }
+
+    private final String mBaseUrl;
+    private final String mLocationSetting;
+    private final String mLatitude;
+    private final String mLongitude;
+    private final ForecastValidatorCache mValidatorCache;
+    private final boolean mConditional;
+
+    /**
+     * @param locationSetting The location string the forecast is stored under.
+     * @param latitude Latitude to query by, or null to query by the location string.
+     * @param longitude Longitude to query by, or null to query by the location string.
+     * @param validatorCache Where to look up validators for a conditional request.
+     * @param conditional Whether we still hold a forecast for this location, and so may ask
+     *                    the server if it changed.
+     */
+    public ForecastFetcher(String locationSetting, String latitude, String longitude,
+                           ForecastValidatorCache validatorCache, boolean conditional) {
+        this(FORECAST_BASE_URL, locationSetting, latitude, longitude, validatorCache, conditional);
+    }
+
+    /**
+     * Asks another server for the forecast, one that speaks OWM's daily forecast API.
+     *
+     * @param baseUrl The forecast URL the query parameters are added to.
+     */
+    public ForecastFetcher(String baseUrl, String locationSetting, String latitude,
+                           String longitude, ForecastValidatorCache validatorCache,
+                           boolean conditional) {
+        mBaseUrl = baseUrl;
+        mLocationSetting = locationSetting;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mValidatorCache = validatorCache;
+        mConditional = conditional;
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    Uri buildForecastUri() {
+        Uri.Builder uriBuilder = Uri.parse(mBaseUrl).buildUpon();
+
+        // Instead of always building the query based off of the location string, we want to
+        // potentially build a query using a lat/lon value. This will be the case when we are
+        // syncing based off of a new location from the Place Picker API. So we need to check
+        // if we have a lat/lon to work with, and use those when we do. Otherwise, the weather
+        // service may not understand the location address provided by the Place Picker API
+        // and the user could end up with no weather! The horror!
+        if (mLatitude != null && mLongitude != null) {
+            uriBuilder.appendQueryParameter(LAT_PARAM, mLatitude)
+                    .appendQueryParameter(LON_PARAM, mLongitude);
+        } else {
+            uriBuilder.appendQueryParameter(QUERY_PARAM, mLocationSetting);
+        }
+
+        return uriBuilder.appendQueryParameter(FORMAT_PARAM, FORMAT)
+                .appendQueryParameter(UNITS_PARAM, UNITS)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+    }
+
+    @Override
+    public Result call() {
+        String requestKey = buildForecastUri().toString();
+        Result result = new Result(mLocationSetting, requestKey);
+
+        // These two need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+
+        try {
+            // Create the request to OpenWeatherMap, and open the connection
+            urlConnection = (HttpURLConnection) new URL(requestKey).openConnection();
+            urlConnection.setRequestMethod("GET");
+
+            // Only ask whether the forecast changed if we still have it.  If the rows were
+            // pruned or wiped a 304 would leave us with nothing to show.
+            if (mConditional) {
+                mValidatorCache.applyTo(urlConnection, requestKey);
+            }
+            urlConnection.connect();
+
+            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                result.notModified = true;
+                result.status = SunshineSyncAdapter.LOCATION_STATUS_OK;
+                return result;
+            }
+
+            // Parse the response straight off the input stream, rather than reading the whole
+            // body into a String first.  An empty stream surfaces as an IOException.
+            inputStream = urlConnection.getInputStream();
+            if (inputStream == null) {
+                // Nothing to do.
+                return result;
+            }
+            ForecastJsonParser.Forecast forecast = ForecastJsonParser.parse(inputStream);
+
+            switch (forecast.messageCode) {
+                case HttpURLConnection.HTTP_OK:
+                    result.forecast = forecast;
+                    result.status = SunshineSyncAdapter.LOCATION_STATUS_OK;
+                    result.etag = urlConnection.getHeaderField(ForecastValidatorCache.HEADER_ETAG);
+                    result.lastModified =
+                            urlConnection.getHeaderField(ForecastValidatorCache.HEADER_LAST_MODIFIED);
+                    break;
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    result.status = SunshineSyncAdapter.LOCATION_STATUS_INVALID;
+                    break;
+                default:
+                    result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error ", e);
+            // If the code didn't successfully get the weather data, there's no point in attempting
+            // to parse it.
+            result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN;
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, e.getMessage(), e);
+            result.status = SunshineSyncAdapter.LOCATION_STATUS_SERVER_INVALID;
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "Error closing stream", e);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package com.explore.archana.weatherwear.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Remembers the HTTP validators (ETag and Last-Modified) of the last forecast we stored for a
+ * given request, so the next sync can ask the server whether anything changed.
+ *
+ * Entries are keyed by the full forecast URI, so a change of location, units or day count
+ * never reuses another request's validators.  The forecast body itself isn't kept here; the
+ * weather table already holds it.
+ */
+public class ForecastValidatorCache {
+
+    static final String PREFS_NAME = "forecast_validators";
+
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private static final String SUFFIX_ETAG = "|etag";
+    private static final String SUFFIX_LAST_MODIFIED = "|last_modified";
+    private static final String SUFFIX_CHECKED = "|checked";
+
+    private final SharedPreferences mPrefs;
+
+    public ForecastValidatorCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Adds the conditional request headers for this request, if we have validators for it.
+     * Must be called before the connection is opened.
+     *
+     * @return true if any validator was sent
+     */
+    public boolean applyTo(HttpURLConnection urlConnection, String requestKey) {
+        String etag = mPrefs.getString(requestKey + SUFFIX_ETAG, null);
+        String lastModified = mPrefs.getString(requestKey + SUFFIX_LAST_MODIFIED, null);
+        if (etag != null) {
+            urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+        }
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Saves the validators the server sent with a response we've finished storing.  Only call
+     * this once the forecast is safely in the database, otherwise a later 304 could leave us
+     * with nothing to show.
+     */
+    public void store(String requestKey, String etag, String lastModified) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        if (etag != null) {
+            editor.putString(requestKey + SUFFIX_ETAG, etag);
+        } else {
+            editor.remove(requestKey + SUFFIX_ETAG);
+        }
+        if (lastModified != null) {
+            editor.putString(requestKey + SUFFIX_LAST_MODIFIED, lastModified);
+        } else {
+            editor.remove(requestKey + SUFFIX_LAST_MODIFIED);
+        }
+        editor.putLong(requestKey + SUFFIX_CHECKED, System.currentTimeMillis());
+        editor.commit();
+    }
+
+    /**
+     * Records that the server confirmed the stored forecast is still current.
+     */
+    public void markChecked(String requestKey) {
+        mPrefs.edit()
+                .putLong(requestKey + SUFFIX_CHECKED, System.currentTimeMillis())
+                .commit();
+    }
+
+    /**
+     * @return when the forecast for this request was last stored or confirmed, 0 if never.
+     */
+    public long getLastChecked(String requestKey) {
+        return mPrefs.getLong(requestKey + SUFFIX_CHECKED, 0);
+    }
+}
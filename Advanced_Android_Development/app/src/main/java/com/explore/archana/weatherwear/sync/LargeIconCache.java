@@ -0,0 +1,273 @@
+package com.explore.archana.weatherwear.sync;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.example.WeatherConditions;
+import com.explore.archana.weatherwear.Utility;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps the notification's large icon already scaled to size, in memory and on disk, so
+ * posting the notification doesn't mean downloading and decoding art each time.
+ *
+ * Icons are keyed by condition bucket rather than condition code (every code in a bucket has
+ * the same art), by art pack, and by size.  If the art pack's icon can't be had, the built in
+ * art is used instead; that's cached under its own key, so the art pack is tried again next
+ * time rather than the stand-in being kept for it.
+ *
+ * Rendering blocks, so this is only used from WeatherNotifier's worker thread (and tests).
+ */
+public class LargeIconCache {
+
+    public static final String LOG_TAG = LargeIconCache.class.getSimpleName();
+
+    static final String DIRECTORY_NAME = "large_icons";
+
+    // A large icon is at most 256x256 on the densest screens, so this holds several
+    private static final int MAX_MEMORY_BYTES = 1024 * 1024;
+    // Buckets times sizes times packs tried, plenty
+    private static final int MAX_DISK_FILES = 32;
+
+    /**
+     * Draws an icon.  Blocks until it's done.
+     */
+    public interface Renderer {
+        /**
+         * @param artPack the art pack's URL format, or null for the built in art
+         * @return the art scaled to fit the size, or null if it couldn't be had
+         */
+        Bitmap render(int weatherId, String artPack, int width, int height);
+    }
+
+    private static LargeIconCache sInstance;
+
+    private final File mDirectory;
+    private final Renderer mRenderer;
+    private final LruCache<String, Bitmap> mMemory;
+
+    // Guarded by this
+    private int mMemoryHits;
+    private int mDiskHits;
+    private int mRenders;
+
+    public static synchronized LargeIconCache getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new LargeIconCache(new File(appContext.getCacheDir(), DIRECTORY_NAME),
+                    new GlideRenderer(appContext));
+        }
+        return sInstance;
+    }
+
+    public LargeIconCache(File directory, Renderer renderer) {
+        mDirectory = directory;
+        mRenderer = renderer;
+        mMemory = new LruCache<String, Bitmap>(MAX_MEMORY_BYTES) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+    }
+
+    static String buildKey(int bucket, String artPack, int width, int height) {
+        String pack = artPack == null ? "local" : Integer.toHexString(artPack.hashCode());
+        return bucket + "_" + pack + "_" + width + "x" + height;
+    }
+
+    /**
+     * @param artPack the art pack's URL format, or null for the built in art
+     * @return the icon for the weather, or null if there's no art for it at all
+     */
+    public synchronized Bitmap get(int weatherId, String artPack, int width, int height) {
+        int bucket = WeatherConditions.getBucket(weatherId);
+        if (bucket == WeatherConditions.BUCKET_UNKNOWN) {
+            return null;
+        }
+        Bitmap icon = getOrRender(bucket, weatherId, artPack, width, height);
+        if (icon == null && artPack != null) {
+            Log.d(LOG_TAG, "No art pack icon for " + weatherId + ", using the built in art");
+            icon = getOrRender(bucket, weatherId, null, width, height);
+        }
+        return icon;
+    }
+
+    /**
+     * @return true if the icon is already in memory or on disk
+     */
+    public synchronized boolean contains(int weatherId, String artPack, int width, int height) {
+        String key = buildKey(WeatherConditions.getBucket(weatherId), artPack, width, height);
+        return mMemory.get(key) != null || getFile(key).exists();
+    }
+
+    public synchronized int getMemoryHits() {
+        return mMemoryHits;
+    }
+
+    public synchronized int getDiskHits() {
+        return mDiskHits;
+    }
+
+    public synchronized int getRenders() {
+        return mRenders;
+    }
+
+    /**
+     * Forgets everything, in memory and on disk.
+     */
+    public synchronized void clear() {
+        mMemory.evictAll();
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private Bitmap getOrRender(int bucket, int weatherId, String artPack, int width,
+                               int height) {
+        String key = buildKey(bucket, artPack, width, height);
+        Bitmap icon = mMemory.get(key);
+        if (icon != null) {
+            mMemoryHits++;
+            return icon;
+        }
+
+        File file = getFile(key);
+        if (file.exists()) {
+            icon = BitmapFactory.decodeFile(file.getPath());
+            if (icon != null) {
+                mDiskHits++;
+                mMemory.put(key, icon);
+                return icon;
+            }
+            // can't be read, so make it again
+            file.delete();
+        }
+
+        mRenders++;
+        icon = mRenderer.render(weatherId, artPack, width, height);
+        if (icon != null) {
+            mMemory.put(key, icon);
+            write(file, icon);
+        }
+        return icon;
+    }
+
+    private File getFile(String key) {
+        return new File(mDirectory, key + ".png");
+    }
+
+    private void write(File file, Bitmap icon) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(LOG_TAG, "Couldn't make " + mDirectory);
+            return;
+        }
+        // Written to the side and renamed, so a half written icon is never read back
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            if (!icon.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Couldn't encode the icon");
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Couldn't rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error saving " + file, e);
+            temp.delete();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nothing more to do
+                }
+            }
+        }
+        trim();
+    }
+
+    // Drops the oldest icons once there are too many
+    private void trim() {
+        File[] files = mDirectory.listFiles();
+        if (files == null || files.length <= MAX_DISK_FILES) {
+            return;
+        }
+        int excess = files.length - MAX_DISK_FILES;
+        for (int i = 0; i < excess; i++) {
+            File oldest = null;
+            for (File file : files) {
+                if (file != null && (oldest == null || file.lastModified() < oldest.lastModified())) {
+                    oldest = file;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            oldest.delete();
+            for (int j = 0; j < files.length; j++) {
+                if (files[j] == oldest) {
+                    files[j] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the art through Glide, fitted to the size; Glide decodes it downsampled rather
+     * than at full size.
+     */
+    static class GlideRenderer implements Renderer {
+        private final Context mContext;
+
+        GlideRenderer(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public Bitmap render(int weatherId, String artPack, int width, int height) {
+            try {
+                if (artPack == null) {
+                    int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+                    if (artResourceId == -1) {
+                        return null;
+                    }
+                    return Glide.with(mContext)
+                            .load(artResourceId)
+                            .asBitmap()
+                            .fitCenter()
+                            .into(width, height).get();
+                }
+                String artUrl = Utility.getArtUrlForWeatherCondition(artPack, weatherId);
+                if (artUrl == null) {
+                    return null;
+                }
+                ArtPrefetcher.getInstance(mContext).recordUse(artUrl);
+                return Glide.with(mContext)
+                        .load(artUrl)
+                        .asBitmap()
+                        .diskCacheStrategy(DiskCacheStrategy.ALL)
+                        .fitCenter()
+                        .into(width, height).get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error rendering the icon for " + weatherId, e);
+                return null;
+            }
+        }
+    }
+}
@@ -2,55 +2,44 @@ package com.explore.archana.weatherwear.sync;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
-import android.annotation.SuppressLint;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
-import android.content.res.Resources;
 import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.database.SQLException;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.RemoteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
-import android.support.v4.app.NotificationCompat;
-import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
-import com.bumptech.glide.Glide;
-import com.explore.archana.weatherwear.BuildConfig;
-import com.explore.archana.weatherwear.MainActivity;
 import com.explore.archana.weatherwear.R;
 import com.explore.archana.weatherwear.Utility;
+import com.explore.archana.weatherwear.data.ForecastSnapshot;
 import com.explore.archana.weatherwear.data.WeatherContract;
 import com.explore.archana.weatherwear.muzei.WeatherMuzeiSource;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
@@ -60,22 +49,7 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     // 60 seconds (1 minute) * 180 = 3 hours
     public static final int SYNC_INTERVAL = 60 * 180;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
-    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
-    private static final int WEATHER_NOTIFICATION_ID = 3004;
-
 
-    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
-    private static final int INDEX_SHORT_DESC = 3;
 
     @Retention(RetentionPolicy.SOURCE)
     @IntDef({LOCATION_STATUS_OK, LOCATION_STATUS_SERVER_DOWN, LOCATION_STATUS_SERVER_INVALID,  LOCATION_STATUS_UNKNOWN, LOCATION_STATUS_INVALID})
@@ -87,6 +61,25 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
 
+    /**
+     * Sync extra naming the saved locations to refresh along with the preferred one.
+     */
+    public static final String SYNC_EXTRA_LOCATIONS = "com.explore.archana.weatherwear.SYNC_LOCATIONS";
+
+    // How many forecasts to download at once when syncing several locations
+    private static final int MAX_CONCURRENT_FETCHES = 3;
+
+    private static final String[] SAVED_LOCATION_PROJECTION = new String[] {
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_LOCATION_SETTING = 0;
+    private static final int INDEX_COORD_LAT = 1;
+    private static final int INDEX_COORD_LONG = 2;
+
     public SunshineSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
     }
@@ -99,286 +92,303 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         // longitude, in case we are syncing based on a new Place Picker API result.
         Context context = getContext();
         String locationQuery = Utility.getPreferredLocation(context);
-        String locationLatitude = String.valueOf(Utility.getLocationLatitude(context));
-        String locationLongitude = String.valueOf(Utility.getLocationLongitude(context));
+        ForecastValidatorCache validatorCache = new ForecastValidatorCache(context);
+
+        List<ForecastFetcher> fetchers = new ArrayList<ForecastFetcher>();
+        if (Utility.isLocationLatLonAvailable(context)) {
+            fetchers.add(new ForecastFetcher(locationQuery,
+                    String.valueOf(Utility.getLocationLatitude(context)),
+                    String.valueOf(Utility.getLocationLongitude(context)),
+                    validatorCache, hasForecastFromToday(locationQuery)));
+        } else {
+            fetchers.add(new ForecastFetcher(locationQuery, null, null,
+                    validatorCache, hasForecastFromToday(locationQuery)));
+        }
+        addSavedLocationFetchers(extras, locationQuery, validatorCache, fetchers);
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+        syncForecasts(fetchers, locationQuery, validatorCache, syncResult);
+    }
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+    /**
+     * Runs the fetchers and writes what they got, then wakes up everything that shows the
+     * preferred location if its forecast changed.  Forecasts the server says haven't changed
+     * are neither parsed nor written.
+     *
+     * @param preferredLocation The location setting the user has chosen
+     * @return what happened to each location, in the same order as the fetchers
+     */
+    public List<ForecastFetcher.Result> syncForecasts(List<ForecastFetcher> fetchers,
+                                                      String preferredLocation,
+                                                      ForecastValidatorCache validatorCache,
+                                                      SyncResult syncResult) {
+        List<ForecastFetcher.Result> results = fetchAll(fetchers);
+        storeWeatherData(results, preferredLocation, validatorCache, syncResult);
+        return results;
+    }
 
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
+    /**
+     * Adds a fetcher for every other location in the location table that should be refreshed,
+     * either the ones named in {@link #SYNC_EXTRA_LOCATIONS} or, when the user asked for it in
+     * settings, all of them.
+     */
+    private void addSavedLocationFetchers(Bundle extras, String preferredLocation,
+                                          ForecastValidatorCache validatorCache,
+                                          List<ForecastFetcher> fetchers) {
+        Context context = getContext();
+        String[] requestedLocations = extras == null ? null
+                : extras.getStringArray(SYNC_EXTRA_LOCATIONS);
+        if (requestedLocations == null && !isSyncAllLocationsEnabled(context)) {
+            return;
+        }
+        List<String> requested = requestedLocations == null ? null
+                : Arrays.asList(requestedLocations);
 
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                SAVED_LOCATION_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return;
+        }
         try {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String LAT_PARAM = "lat";
-            final String LON_PARAM = "lon";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri.Builder uriBuilder = Uri.parse(FORECAST_BASE_URL).buildUpon();
-
-            // Instead of always building the query based off of the location string, we want to
-            // potentially build a query using a lat/lon value. This will be the case when we are
-            // syncing based off of a new location from the Place Picker API. So we need to check
-            // if we have a lat/lon to work with, and use those when we do. Otherwise, the weather
-            // service may not understand the location address provided by the Place Picker API
-            // and the user could end up with no weather! The horror!
-            if (Utility.isLocationLatLonAvailable(context)) {
-                uriBuilder.appendQueryParameter(LAT_PARAM, locationLatitude)
-                        .appendQueryParameter(LON_PARAM, locationLongitude);
-            } else {
-                uriBuilder.appendQueryParameter(QUERY_PARAM, locationQuery);
+            while (cursor.moveToNext()) {
+                String locationSetting = cursor.getString(INDEX_LOCATION_SETTING);
+                if (locationSetting.equals(preferredLocation)
+                        || (requested != null && !requested.contains(locationSetting))) {
+                    continue;
+                }
+                // Query by the coordinates OWM gave us for this location last time, since the
+                // stored setting may be a Place Picker address it doesn't understand.
+                fetchers.add(new ForecastFetcher(locationSetting,
+                        String.valueOf(cursor.getDouble(INDEX_COORD_LAT)),
+                        String.valueOf(cursor.getDouble(INDEX_COORD_LONG)),
+                        validatorCache, hasForecastFromToday(locationSetting)));
             }
+        } finally {
+            cursor.close();
+        }
+    }
 
-            Uri builtUri = uriBuilder.appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null) {
-                // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
-            }
+    /**
+     * Runs the fetchers, at most {@link #MAX_CONCURRENT_FETCHES} at a time, and returns their
+     * results in the same order.
+     */
+    private List<ForecastFetcher.Result> fetchAll(List<ForecastFetcher> fetchers) {
+        List<ForecastFetcher.Result> results = new ArrayList<ForecastFetcher.Result>(fetchers.size());
+        if (fetchers.size() == 1) {
+            // The common case; no need for any threads.
+            results.add(fetchers.get(0).call());
+            return results;
+        }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
-            }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Error ", e);
-            // If the code didn't successfully get the weather data, there's no point in attempting
-            // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (reader != null) {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(MAX_CONCURRENT_FETCHES, fetchers.size()));
+        try {
+            List<Future<ForecastFetcher.Result>> futures = executor.invokeAll(fetchers);
+            for (int i = 0; i < futures.size(); i++) {
                 try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Log.e(LOG_TAG, "Error fetching " + fetchers.get(i).getLocationSetting(), e);
+                    // report it like any other failed request
+                    ForecastFetcher.Result failed = new ForecastFetcher.Result(
+                            fetchers.get(i).getLocationSetting(), null);
+                    failed.status = LOCATION_STATUS_SERVER_DOWN;
+                    results.add(failed);
                 }
             }
+        } catch (InterruptedException e) {
+            Log.e(LOG_TAG, "Sync interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
         }
-        return;
+        return results;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
+     * Take the parsed forecasts and write them to the database in one go, then let everything
+     * that shows the weather know there's new data.
      *
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * The rows coming out of {@link ForecastJsonParser} already hold the day's values; all
+     * that's left is stamping each one with its location and normalized date.  The locations,
+     * the forecasts and the pruning of old days all go to the provider as a single batch, so
+     * they're committed together and observers hear about it once.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
-
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
-
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
-
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
-
-        final String OWM_MESSAGE_CODE = "cod";
-
-        try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
-            Context context = getContext();
-
-            // do we have an error?
-            if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
-                }
+    private void storeWeatherData(List<ForecastFetcher.Result> results, String preferredLocation,
+                                  ForecastValidatorCache validatorCache, SyncResult syncResult) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        // The location of each weather row operation, null for the other operations
+        List<String> operationLocations = new ArrayList<String>();
+        Uri locationUpsertUri = WeatherContract.buildUpsertUri(WeatherContract.LocationEntry.CONTENT_URI);
+        Uri weatherUpsertUri = WeatherContract.buildUpsertUri(WeatherContract.WeatherEntry.CONTENT_URI);
+        int weatherRows = 0;
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
+
+        Time dayTime = new Time();
+        dayTime.setToNow();
+
+        // we start at the day returned by local time. Otherwise this is a mess.
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+        // now we work exclusively in UTC
+        dayTime = new Time();
+
+        for (ForecastFetcher.Result result : results) {
+            ForecastJsonParser.Forecast forecast = result.forecast;
+            if (forecast == null || forecast.days.size() == 0) {
+                continue;
             }
-
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
-
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
-
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
-
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
-
-            Time dayTime = new Time();
-            dayTime.setToNow();
-
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
-
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
+            // The provider hands back the existing location if there is one, and the weather
+            // rows pick up its id from this operation's result.
+            int locationOperation = operations.size();
+            operations.add(ContentProviderOperation.newInsert(locationUpsertUri)
+                    .withValues(buildLocationValues(result.locationSetting, forecast.cityName,
+                            forecast.cityLatitude, forecast.cityLongitude))
+                    .build());
+            operationLocations.add(null);
+
+            for (int i = 0; i < forecast.days.size(); i++) {
+                ContentValues weatherValues = forecast.days.get(i);
 
                 // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
+                long dateTime = dayTime.setJulianDay(julianStartDay + i);
 
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
+                operations.add(ContentProviderOperation.newInsert(weatherUpsertUri)
+                        .withValues(weatherValues)
+                        .withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+                                locationOperation)
+                        .build());
+                operationLocations.add(result.locationSetting);
+            }
+            weatherRows += forecast.days.size();
+        }
 
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
+        boolean written = false;
+        boolean preferredChanged = false;
+        // add to database
+        if (weatherRows > 0) {
+            // delete old data so we don't build up an endless history
+            operations.add(ContentProviderOperation.newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                            new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))})
+                    .build());
+            operationLocations.add(null);
+
+            try {
+                ContentProviderResult[] applied = getContext().getContentResolver()
+                        .applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+                written = true;
+                preferredChanged = countWrites(applied, operationLocations, preferredLocation,
+                        syncResult);
+            } catch (RemoteException | OperationApplicationException | SQLException e) {
+                Log.e(LOG_TAG, "Error writing forecasts", e);
+                syncResult.databaseError = true;
+            }
+        }
 
-                ContentValues weatherValues = new ContentValues();
+        // Widgets, Muzei, the notification and the watch face only ever show the preferred
+        // location, so they don't need waking for the others, or when its forecast came back
+        // the same as what we already had.
+        if (preferredChanged) {
+            // Load the new forecast once here, and let all of them share it.
+            ForecastSnapshot.refresh(getContext());
+            updateWidgets();
+            updateMuzei();
+            notifyWeather();
+            Utility.updateWatchFace(getContext());
+            // Get the art pack's pictures into the image cache before anything shows them
+            ArtPrefetcher.getInstance(getContext()).prefetchForecast(getContext());
+        }
 
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
+        for (ForecastFetcher.Result result : results) {
+            if (result.notModified) {
+                // What we have is still current, so there was nothing to parse or write.
+                validatorCache.markChecked(result.requestKey);
+            } else if (written && result.forecast != null && result.forecast.days.size() > 0) {
+                // Only now that the forecast is committed is it safe to ask for a 304 next time.
+                validatorCache.store(result.requestKey, result.etag, result.lastModified);
+            }
+            switch (result.status) {
+                case LOCATION_STATUS_SERVER_DOWN:
+                    syncResult.stats.numIoExceptions++;
+                    break;
+                case LOCATION_STATUS_SERVER_INVALID:
+                    syncResult.stats.numParseExceptions++;
+                    break;
             }
+            Log.d(LOG_TAG, "Synced " + result.locationSetting + ": status " + result.status
+                    + (result.notModified ? ", not modified" : ""));
+        }
+        setLocationStatuses(getContext(), results, preferredLocation);
+        Log.d(LOG_TAG, "Sync Complete. " + weatherRows + " Processed");
+    }
 
-            int inserted = 0;
-            // add to database
-            if ( cVVector.size() > 0 ) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-                Utility.updateWatchFace(getContext());
+    /**
+     * Adds what the batch did to the sync stats.
+     *
+     * @return true if any row of the preferred location was inserted or updated.
+     */
+    private boolean countWrites(ContentProviderResult[] applied, List<String> operationLocations,
+                                String preferredLocation, SyncResult syncResult) {
+        boolean preferredChanged = false;
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        for (int i = 0; i < applied.length; i++) {
+            String locationSetting = operationLocations.get(i);
+            if (applied[i].uri == null) {
+                // the only count in the batch is the delete
+                syncResult.stats.numDeletes += applied[i].count;
+                continue;
+            }
+            if (locationSetting == null) {
+                continue;
+            }
+            String upsertResult = WeatherContract.getUpsertResultFromUri(applied[i].uri);
+            if (WeatherContract.RESULT_UNCHANGED.equals(upsertResult)) {
+                unchanged++;
+                continue;
+            }
+            if (WeatherContract.RESULT_UPDATED.equals(upsertResult)) {
+                updated++;
+            } else {
+                inserted++;
+            }
+            if (locationSetting.equals(preferredLocation)) {
+                preferredChanged = true;
             }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+        }
+        syncResult.stats.numInserts += inserted;
+        syncResult.stats.numUpdates += updated;
+        syncResult.stats.numSkippedEntries += unchanged;
+        Log.d(LOG_TAG, "Batch: " + inserted + " inserted, " + updated + " updated, "
+                + unchanged + " unchanged");
+        return preferredChanged;
+    }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+    /**
+     * @return true if the database has a forecast for today at the given location.
+     */
+    private boolean hasForecastFromToday(String locationSetting) {
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = getContext().getContentResolver().query(weatherUri,
+                new String[]{WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID},
+                null, null, null);
+        if (cursor == null) {
+            return false;
         }
+        boolean hasForecast = cursor.moveToFirst();
+        cursor.close();
+        return hasForecast;
     }
 
     private void updateWidgets() {
@@ -400,160 +410,31 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     private void notifyWeather() {
-        Context context = getContext();
-        //checking the last update and notify if it' the first of the day
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-        boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
-                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
-
-        if ( displayNotifications ) {
-
-            String lastNotificationKey = context.getString(R.string.pref_last_notification);
-            long lastSync = prefs.getLong(lastNotificationKey, 0);
-
-            if (System.currentTimeMillis() - lastSync >= DAY_IN_MILLIS) {
-                // Last sync was more than 1 day ago, let's send a notification with the weather.
-                String locationQuery = Utility.getPreferredLocation(context);
-
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
-
-                // we'll query our contentProvider, as always
-                Cursor cursor = context.getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION, null, null, null);
-
-                if (cursor.moveToFirst()) {
-                    int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-                    double high = cursor.getDouble(INDEX_MAX_TEMP);
-                    double low = cursor.getDouble(INDEX_MIN_TEMP);
-                    String desc = cursor.getString(INDEX_SHORT_DESC);
-
-                    int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
-                    Resources resources = context.getResources();
-                    int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-                    String artUrl = Utility.getArtUrlForWeatherCondition(context, weatherId);
-
-                    // On Honeycomb and higher devices, we can retrieve the size of the large icon
-                    // Prior to that, we use a fixed size
-                    @SuppressLint("InlinedApi")
-                    int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-                    @SuppressLint("InlinedApi")
-                    int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
-                            ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
-                            : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
-
-                    // Retrieve the large icon
-                    Bitmap largeIcon;
-                    try {
-                        largeIcon = Glide.with(context)
-                                .load(artUrl)
-                                .asBitmap()
-                                .error(artResourceId)
-                                .fitCenter()
-                                .into(largeIconWidth, largeIconHeight).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
-                        largeIcon = BitmapFactory.decodeResource(resources, artResourceId);
-                    }
-                    String title = context.getString(R.string.app_name);
-
-                    // Define the text of the forecast.
-                    String contentText = String.format(context.getString(R.string.format_notification),
-                            desc,
-                            Utility.formatTemperature(context, high),
-                            Utility.formatTemperature(context, low));
-
-                    // NotificationCompatBuilder is a very convenient way to build backward-compatible
-                    // notifications.  Just throw in some data.
-                    NotificationCompat.Builder mBuilder =
-                            new NotificationCompat.Builder(getContext())
-                                    .setColor(resources.getColor(R.color.primary_light))
-                                    .setSmallIcon(iconId)
-                                    .setLargeIcon(largeIcon)
-                                    .setContentTitle(title)
-                                    .setContentText(contentText);
-
-                    // Make something interesting happen when the user clicks on the notification.
-                    // In this case, opening the app is sufficient.
-                    Intent resultIntent = new Intent(context, MainActivity.class);
-
-                    // The stack builder object will contain an artificial back stack for the
-                    // started Activity.
-                    // This ensures that navigating backward from the Activity leads out of
-                    // your application to the Home screen.
-                    TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
-                    stackBuilder.addNextIntent(resultIntent);
-                    PendingIntent resultPendingIntent =
-                            stackBuilder.getPendingIntent(
-                                    0,
-                                    PendingIntent.FLAG_UPDATE_CURRENT
-                            );
-                    mBuilder.setContentIntent(resultPendingIntent);
-
-                    NotificationManager mNotificationManager =
-                            (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
-                    // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
-                    mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
-
-                    //refreshing last sync
-                    SharedPreferences.Editor editor = prefs.edit();
-                    editor.putLong(lastNotificationKey, System.currentTimeMillis());
-                    editor.commit();
-                }
-                cursor.close();
-            }
-        }
+        // The notification, and its large icon, are made on the notifier's own thread, so
+        // the sync doesn't wait on any image loading.
+        WeatherNotifier.getInstance(getContext()).onForecastWritten();
     }
 
     /**
-     * Helper method to handle insertion of a new location in the weather database.
+     * Helper method to build the values of a location for the weather database.
      *
      * @param locationSetting The location string used to request updates from the server.
      * @param cityName A human-readable city name, e.g "Mountain View"
      * @param lat the latitude of the city
      * @param lon the longitude of the city
-     * @return the row ID of the added location.
+     * @return the values to insert for the location.
      */
-    long addLocation(String locationSetting, String cityName, double lat, double lon) {
-        long locationId;
-
-        // First, check if the location with this city name exists in the db
-        Cursor locationCursor = getContext().getContentResolver().query(
-                WeatherContract.LocationEntry.CONTENT_URI,
-                new String[]{WeatherContract.LocationEntry._ID},
-                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
-                new String[]{locationSetting},
-                null);
-
-        if (locationCursor.moveToFirst()) {
-            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
-            locationId = locationCursor.getLong(locationIdIndex);
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // First create a ContentValues object to hold the data you want to insert.
-            ContentValues locationValues = new ContentValues();
-
-            // Then add the data, along with the corresponding name of the data type,
-            // so the content provider knows what kind of value is being inserted.
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
-
-            // Finally, insert location data into the database.
-            Uri insertedUri = getContext().getContentResolver().insert(
-                    WeatherContract.LocationEntry.CONTENT_URI,
-                    locationValues
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            locationId = ContentUris.parseId(insertedUri);
-        }
-
-        locationCursor.close();
-        // Wait, that worked?  Yes!
-        return locationId;
+    static ContentValues buildLocationValues(String locationSetting, String cityName,
+                                             double lat, double lon) {
+        ContentValues locationValues = new ContentValues();
+
+        // Add the data, along with the corresponding name of the data type,
+        // so the content provider knows what kind of value is being inserted.
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+        return locationValues;
     }
 
     /**
@@ -649,15 +530,34 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Sets the location status into shared preference.  This function should not be called from
-     * the UI thread because it uses commit to write to the shared preferences.
+     * Sets the status of every location in this sync into shared preference, and mirrors the
+     * preferred location's status into the global location status the UI watches.  This
+     * function should not be called from the UI thread because it uses commit to write to the
+     * shared preferences.
      * @param c Context to get the PreferenceManager from.
-     * @param locationStatus The IntDef value to set
+     * @param results The results of this sync, one per location
+     * @param preferredLocation The location setting the user has chosen
      */
-    static private void setLocationStatus(Context c, @LocationStatus int locationStatus){
+    static private void setLocationStatuses(Context c, List<ForecastFetcher.Result> results,
+                                            String preferredLocation) {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
         SharedPreferences.Editor spe = sp.edit();
-        spe.putInt(c.getString(R.string.pref_location_status_key), locationStatus);
+        String prefix = c.getString(R.string.pref_location_status_prefix);
+        for (ForecastFetcher.Result result : results) {
+            if (result.status == LOCATION_STATUS_UNKNOWN) {
+                continue;
+            }
+            spe.putInt(prefix + result.locationSetting, result.status);
+            if (result.locationSetting.equals(preferredLocation)) {
+                spe.putInt(c.getString(R.string.pref_location_status_key), result.status);
+            }
+        }
         spe.commit();
     }
+
+    private static boolean isSyncAllLocationsEnabled(Context c) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
+        return sp.getBoolean(c.getString(R.string.pref_sync_all_locations_key),
+                Boolean.parseBoolean(c.getString(R.string.pref_sync_all_locations_default)));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.explore.archana.weatherwear.sync;
+
+import android.annotation.SuppressLint;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.TaskStackBuilder;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.MainActivity;
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.Settings;
+import com.explore.archana.weatherwear.Utility;
+import com.explore.archana.weatherwear.data.ForecastSnapshot;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Posts the once-a-day weather notification, off the sync thread.
+ *
+ * Every time a new forecast is written, today's large icon is put in the LargeIconCache, so by
+ * the time the notification is due its icon is usually already there and posting it doesn't
+ * wait on the network or a decode.  Both happen on a single worker thread; the sync only
+ * queues the work and carries on.
+ */
+public class WeatherNotifier {
+
+    public static final String LOG_TAG = WeatherNotifier.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
+
+    private static WeatherNotifier sInstance;
+
+    private final Context mContext;
+    private final LargeIconCache mIconCache;
+    private final ExecutorService mWorker;
+
+    // Written on the worker thread, read from anywhere
+    private volatile int mNotifyCount;
+    private volatile int mIconCacheHitCount;
+
+    public static synchronized WeatherNotifier getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new WeatherNotifier(appContext, LargeIconCache.getInstance(appContext));
+        }
+        return sInstance;
+    }
+
+    WeatherNotifier(Context context, LargeIconCache iconCache) {
+        mContext = context;
+        mIconCache = iconCache;
+        mWorker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Call once a new forecast for the preferred location has been written and the
+     * ForecastSnapshot refreshed.  Returns straight away.
+     */
+    public void onForecastWritten() {
+        mWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prepareAndNotify();
+                } catch (RuntimeException e) {
+                    // don't let one bad forecast take the worker down with it
+                    Log.e(LOG_TAG, "Error updating the notification", e);
+                }
+            }
+        });
+    }
+
+    public int getNotifyCount() {
+        return mNotifyCount;
+    }
+
+    /**
+     * How many notifications found their large icon already made.
+     */
+    public int getIconCacheHitCount() {
+        return mIconCacheHitCount;
+    }
+
+    private void prepareAndNotify() {
+        Context context = mContext;
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
+        boolean displayNotifications = prefs.getBoolean(displayNotificationsKey,
+                Boolean.parseBoolean(context.getString(R.string.pref_enable_notifications_default)));
+        if (!displayNotifications) {
+            return;
+        }
+
+        ForecastSnapshot.Day today = ForecastSnapshot.get(context).getToday();
+        if (today == null) {
+            return;
+        }
+
+        Resources resources = context.getResources();
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        @SuppressLint("InlinedApi")
+        int largeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        @SuppressLint("InlinedApi")
+        int largeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+
+        // The Sunshine pack is the same art we ship, so there's no need to download it
+        Settings settings = Settings.get(context);
+        String artPack = settings.usingLocalGraphics ? null : settings.artPack;
+        boolean cached = mIconCache.contains(today.weatherId, artPack, largeIconWidth,
+                largeIconHeight);
+        // Made now even if the notification isn't due, so it's ready when it is
+        Bitmap largeIcon = mIconCache.get(today.weatherId, artPack, largeIconWidth,
+                largeIconHeight);
+
+        //checking the last update and notify if it' the first of the day
+        String lastNotificationKey = context.getString(R.string.pref_last_notification);
+        long lastSync = prefs.getLong(lastNotificationKey, 0);
+        if (System.currentTimeMillis() - lastSync < DAY_IN_MILLIS) {
+            return;
+        }
+        if (cached) {
+            mIconCacheHitCount++;
+        }
+        Log.d(LOG_TAG, "Notifying, large icon " + (cached ? "was cached" : "made now"));
+
+        String title = context.getString(R.string.app_name);
+
+        // Define the text of the forecast.
+        String contentText = String.format(context.getString(R.string.format_notification),
+                today.shortDesc,
+                Utility.formatTemperature(context, today.maxTemp),
+                Utility.formatTemperature(context, today.minTemp));
+
+        // NotificationCompatBuilder is a very convenient way to build backward-compatible
+        // notifications.  Just throw in some data.
+        NotificationCompat.Builder mBuilder =
+                new NotificationCompat.Builder(context)
+                        .setColor(resources.getColor(R.color.primary_light))
+                        .setSmallIcon(Utility.getIconResourceForWeatherCondition(today.weatherId))
+                        .setLargeIcon(largeIcon)
+                        .setContentTitle(title)
+                        .setContentText(contentText);
+
+        // Make something interesting happen when the user clicks on the notification.
+        // In this case, opening the app is sufficient.
+        Intent resultIntent = new Intent(context, MainActivity.class);
+
+        // The stack builder object will contain an artificial back stack for the
+        // started Activity.
+        // This ensures that navigating backward from the Activity leads out of
+        // your application to the Home screen.
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(context);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent resultPendingIntent =
+                stackBuilder.getPendingIntent(
+                        0,
+                        PendingIntent.FLAG_UPDATE_CURRENT
+                );
+        mBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager mNotificationManager =
+                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+        mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
+        mNotifyCount++;
+
+        //refreshing last sync
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putLong(lastNotificationKey, System.currentTimeMillis());
+        editor.commit();
+    }
+}
@@ -4,7 +4,6 @@ public final class WatchfaceSyncCommons {
     public WatchfaceSyncCommons() {}
 
     public static final String KEY_PATH = "/com.explore.archana.weatherwear";
-    public static final String KEY_WEATHER_ID = "KEY_WEATHER_ID";
-    public static final String KEY_MAX_TEMP = "KEY_MAX_TEMP";
-    public static final String KEY_MIN_TEMP = "KEY_MIN_TEMP";
+    // byte[] made by WeatherPayload.encode()
+    public static final String KEY_FORECAST = "KEY_FORECAST";
 }
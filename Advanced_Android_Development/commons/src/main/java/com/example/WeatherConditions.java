@@ -0,0 +1,149 @@
+package com.example;
+
+/**
+ * What the phone and the watch need to know about an OpenWeatherMap condition code, worked
+ * out once into tables indexed by the code, so a lookup is an array access rather than a
+ * chain of range checks.
+ *
+ * Codes are grouped into buckets that share icon and art; each module keeps its own
+ * resources in arrays indexed by bucket.  Descriptions are finer grained, most codes have
+ * their own, so those are looked up by description key.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    public static final int MAX_CODE = 999;
+
+    public static final int BUCKET_UNKNOWN = 0;
+    public static final int BUCKET_STORM = 1;
+    public static final int BUCKET_LIGHT_RAIN = 2;
+    public static final int BUCKET_RAIN = 3;
+    public static final int BUCKET_SNOW = 4;
+    public static final int BUCKET_FOG = 5;
+    // drawn as a storm, but Muzei has its own picture for it
+    public static final int BUCKET_TORNADO = 6;
+    public static final int BUCKET_CLEAR = 7;
+    public static final int BUCKET_LIGHT_CLOUDS = 8;
+    public static final int BUCKET_CLOUDS = 9;
+    public static final int BUCKET_COUNT = 10;
+
+    // Description key for every thunderstorm and every drizzle code
+    public static final int DESCRIPTION_2XX = 200;
+    public static final int DESCRIPTION_3XX = 300;
+
+    // Names the art packs use for each bucket's art, by bucket
+    private static final String[] ART_SLUGS = {
+            null, "storm", "light_rain", "rain", "snow", "fog", "storm", "clear",
+            "light_clouds", "clouds"
+    };
+
+    private static final String[] IMAGE_URLS = {
+            null,
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+
+    // Codes that have a description of their own
+    private static final int[] DESCRIBED_CODES = {
+            500, 501, 502, 503, 504, 511, 520, 531,
+            600, 601, 602, 611, 612, 615, 616, 620, 621, 622,
+            701, 711, 721, 731, 741, 751, 761, 762, 771, 781,
+            800, 801, 802, 803, 804,
+            900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962
+    };
+
+    private static final byte[] BUCKETS = new byte[MAX_CODE + 1];
+    private static final short[] DESCRIPTION_KEYS = new short[MAX_CODE + 1];
+
+    static {
+        fillBuckets(200, 232, BUCKET_STORM);
+        fillBuckets(300, 321, BUCKET_LIGHT_RAIN);
+        fillBuckets(500, 504, BUCKET_RAIN);
+        fillBuckets(511, 511, BUCKET_SNOW);
+        fillBuckets(520, 531, BUCKET_RAIN);
+        fillBuckets(600, 622, BUCKET_SNOW);
+        fillBuckets(701, 761, BUCKET_FOG);
+        fillBuckets(781, 781, BUCKET_TORNADO);
+        fillBuckets(800, 800, BUCKET_CLEAR);
+        fillBuckets(801, 801, BUCKET_LIGHT_CLOUDS);
+        fillBuckets(802, 804, BUCKET_CLOUDS);
+
+        for (int code = 0; code <= MAX_CODE; code++) {
+            DESCRIPTION_KEYS[code] = -1;
+        }
+        for (int code = 200; code <= 232; code++) {
+            DESCRIPTION_KEYS[code] = DESCRIPTION_2XX;
+        }
+        for (int code = 300; code <= 321; code++) {
+            DESCRIPTION_KEYS[code] = DESCRIPTION_3XX;
+        }
+        for (int code : DESCRIBED_CODES) {
+            DESCRIPTION_KEYS[code] = (short) code;
+        }
+    }
+
+    private WeatherConditions() {
+    }
+
+    /**
+     * @return the code's bucket, BUCKET_UNKNOWN for codes we don't have art for
+     */
+    public static int getBucket(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_CODE) {
+            return BUCKET_UNKNOWN;
+        }
+        return BUCKETS[weatherId];
+    }
+
+    /**
+     * @return the name art packs give the code's art, or null if there's none
+     */
+    public static String getArtSlug(int weatherId) {
+        return ART_SLUGS[getBucket(weatherId)];
+    }
+
+    /**
+     * @return a URL to a photo of the weather, or null if there's none
+     */
+    public static String getImageUrl(int weatherId) {
+        return IMAGE_URLS[getBucket(weatherId)];
+    }
+
+    /**
+     * @return which description the code has: the code itself if it has its own,
+     * DESCRIPTION_2XX or DESCRIPTION_3XX for thunderstorms and drizzle, or -1 if none
+     */
+    public static int getDescriptionKey(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_CODE) {
+            return -1;
+        }
+        return DESCRIPTION_KEYS[weatherId];
+    }
+
+    /**
+     * @return every description key getDescriptionKey() can return, other than -1
+     */
+    public static int[] getDescriptionKeys() {
+        int[] keys = new int[DESCRIBED_CODES.length + 2];
+        keys[0] = DESCRIPTION_2XX;
+        keys[1] = DESCRIPTION_3XX;
+        System.arraycopy(DESCRIBED_CODES, 0, keys, 2, DESCRIBED_CODES.length);
+        return keys;
+    }
+
+    private static void fillBuckets(int from, int to, int bucket) {
+        for (int code = from; code <= to; code++) {
+            BUCKETS[code] = (byte) bucket;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example;
+
+/**
+ * The forecast the phone sends to the watch, packed into a byte array that goes into the
+ * DataMap under {@link WatchfaceSyncCommons#KEY_FORECAST}.
+ *
+ * Layout, big-endian:
+ * <pre>
+ *   byte   version            VERSION
+ *   byte   units              UNITS_METRIC or UNITS_IMPERIAL, what the temperatures are in
+ *   long   timestamp          when the phone built it, in millis
+ *   byte   day count          at most MAX_DAYS
+ *   byte   day record size    DAY_RECORD_SIZE, so a reader can skip fields added later
+ *   then for each day:
+ *   long   date               start of the day, in millis
+ *   short  weather id         OpenWeatherMap condition code
+ *   short  max temperature    in tenths of a degree
+ *   short  min temperature    in tenths of a degree
+ * </pre>
+ *
+ * One instance can be filled and encoded, or decoded into, over and over: decoding reads
+ * straight into the instance's arrays without allocating anything.  Instances aren't
+ * thread safe.
+ */
+public final class WeatherPayload {
+
+    public static final int VERSION = 1;
+    public static final int MAX_DAYS = 14;
+
+    public static final int UNITS_METRIC = 0;
+    public static final int UNITS_IMPERIAL = 1;
+
+    static final int HEADER_SIZE = 12;
+    private static final int TIMESTAMP_OFFSET = 2;
+    static final int DAY_RECORD_SIZE = 14;
+
+    private int units = UNITS_METRIC;
+    private long timestamp;
+    private int dayCount;
+    private final long[] dates = new long[MAX_DAYS];
+    private final int[] weatherIds = new int[MAX_DAYS];
+    // tenths of a degree
+    private final short[] maxTemps = new short[MAX_DAYS];
+    private final short[] minTemps = new short[MAX_DAYS];
+
+    /**
+     * @return how many bytes encode() produces for that many days
+     */
+    public static int getEncodedSize(int days) {
+        return HEADER_SIZE + days * DAY_RECORD_SIZE;
+    }
+
+    /**
+     * A hash of an encoded payload that leaves out the timestamp, so the same forecast built
+     * twice hashes the same.
+     */
+    public static int contentHash(byte[] encoded) {
+        int hash = 1;
+        for (int i = 0; i < encoded.length; i++) {
+            if (i < TIMESTAMP_OFFSET || i >= TIMESTAMP_OFFSET + 8) {
+                hash = 31 * hash + encoded[i];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return true if the two encoded payloads differ in nothing but their timestamps
+     */
+    public static boolean contentEquals(byte[] a, byte[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i] && (i < TIMESTAMP_OFFSET || i >= TIMESTAMP_OFFSET + 8)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        units = UNITS_METRIC;
+        timestamp = 0;
+        dayCount = 0;
+    }
+
+    public void setUnits(int units) {
+        if (units != UNITS_METRIC && units != UNITS_IMPERIAL) {
+            throw new IllegalArgumentException("Unknown units " + units);
+        }
+        this.units = units;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Adds the next day.  Temperatures are kept to a tenth of a degree.
+     */
+    public void addDay(long date, int weatherId, double maxTemp, double minTemp) {
+        if (dayCount == MAX_DAYS) {
+            throw new IllegalStateException("A payload holds at most " + MAX_DAYS + " days");
+        }
+        dates[dayCount] = date;
+        weatherIds[dayCount] = weatherId;
+        maxTemps[dayCount] = toTenths(maxTemp);
+        minTemps[dayCount] = toTenths(minTemp);
+        dayCount++;
+    }
+
+    public byte[] encode() {
+        byte[] out = new byte[getEncodedSize(dayCount)];
+        out[0] = VERSION;
+        out[1] = (byte) units;
+        writeLong(out, TIMESTAMP_OFFSET, timestamp);
+        out[10] = (byte) dayCount;
+        out[11] = DAY_RECORD_SIZE;
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < dayCount; i++) {
+            writeLong(out, offset, dates[i]);
+            writeShort(out, offset + 8, weatherIds[i]);
+            writeShort(out, offset + 10, maxTemps[i]);
+            writeShort(out, offset + 12, minTemps[i]);
+            offset += DAY_RECORD_SIZE;
+        }
+        return out;
+    }
+
+    /**
+     * Replaces this payload's contents with the encoded one's.
+     *
+     * @throws IllegalArgumentException if it's a version this doesn't know, cut short or
+     * otherwise malformed.  The contents are left empty then.
+     */
+    public void decode(byte[] in) {
+        dayCount = 0;
+        if (in == null || in.length < HEADER_SIZE) {
+            throw new IllegalArgumentException("Payload too short");
+        }
+        if (in[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported payload version " + in[0]);
+        }
+        int newUnits = in[1];
+        int newDayCount = in[10] & 0xff;
+        int recordSize = in[11] & 0xff;
+        if ((newUnits != UNITS_METRIC && newUnits != UNITS_IMPERIAL)
+                || newDayCount > MAX_DAYS || recordSize < DAY_RECORD_SIZE
+                || in.length < HEADER_SIZE + newDayCount * recordSize) {
+            throw new IllegalArgumentException("Malformed payload");
+        }
+
+        units = newUnits;
+        timestamp = readLong(in, TIMESTAMP_OFFSET);
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < newDayCount; i++) {
+            dates[i] = readLong(in, offset);
+            weatherIds[i] = readShort(in, offset + 8);
+            maxTemps[i] = (short) readShort(in, offset + 10);
+            minTemps[i] = (short) readShort(in, offset + 12);
+            offset += recordSize;
+        }
+        dayCount = newDayCount;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    public long getDate(int day) {
+        checkDay(day);
+        return dates[day];
+    }
+
+    public int getWeatherId(int day) {
+        checkDay(day);
+        return weatherIds[day];
+    }
+
+    public float getMaxTemp(int day) {
+        checkDay(day);
+        return maxTemps[day] / 10f;
+    }
+
+    public float getMinTemp(int day) {
+        checkDay(day);
+        return minTemps[day] / 10f;
+    }
+
+    /**
+     * @return the day that's current at the given time: the last one starting at or before
+     * it, or the first day if they're all still ahead; -1 if there are no days
+     */
+    public int findDay(long timeMillis) {
+        if (dayCount == 0) {
+            return -1;
+        }
+        int day = 0;
+        while (day + 1 < dayCount && dates[day + 1] <= timeMillis) {
+            day++;
+        }
+        return day;
+    }
+
+    private void checkDay(int day) {
+        if (day < 0 || day >= dayCount) {
+            throw new IndexOutOfBoundsException("Day " + day + " of " + dayCount);
+        }
+    }
+
+    private static short toTenths(double temperature) {
+        long tenths = Math.round(temperature * 10);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths));
+    }
+
+    private static void writeLong(byte[] out, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            out[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void writeShort(byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >> 8);
+        out[offset + 1] = (byte) value;
+    }
+
+    private static long readLong(byte[] in, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (in[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    // sign-extended, so negative temperatures come back negative
+    private static int readShort(byte[] in, int offset) {
+        return (short) (((in[offset] & 0xff) << 8) | (in[offset + 1] & 0xff));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the tables give the same answers as the range checks they replaced, for every code.
+ * The old chains are copied here as they were.
+ */
+public class WeatherConditionsTest {
+
+    private static final int[] OLD_DESCRIBED_CODES = {
+            500, 501, 502, 503, 504, 511, 520, 531, 600, 601, 602, 611, 612, 615, 616, 620,
+            621, 622, 701, 711, 721, 731, 741, 751, 761, 762, 771, 781, 800, 801, 802, 803,
+            804, 900, 901, 902, 903, 904, 905, 906, 951, 952, 953, 954, 955, 956, 957, 958,
+            959, 960, 961, 962
+    };
+
+    @Test
+    public void artSlugsMatchOldChain() {
+        for (int code = 0; code <= WeatherConditions.MAX_CODE; code++) {
+            assertEquals("code " + code, oldArtSlug(code), WeatherConditions.getArtSlug(code));
+        }
+    }
+
+    @Test
+    public void imageUrlsMatchOldChain() {
+        for (int code = 0; code <= WeatherConditions.MAX_CODE; code++) {
+            assertEquals("code " + code, oldImageUrl(code), WeatherConditions.getImageUrl(code));
+        }
+    }
+
+    @Test
+    public void descriptionKeysMatchOldSwitch() {
+        for (int code = 0; code <= WeatherConditions.MAX_CODE; code++) {
+            assertEquals("code " + code, oldDescriptionKey(code),
+                    WeatherConditions.getDescriptionKey(code));
+        }
+    }
+
+    @Test
+    public void codesOutOfRangeAreUnknown() {
+        assertEquals(WeatherConditions.BUCKET_UNKNOWN, WeatherConditions.getBucket(-1));
+        assertEquals(WeatherConditions.BUCKET_UNKNOWN,
+                WeatherConditions.getBucket(WeatherConditions.MAX_CODE + 1));
+        assertEquals(-1, WeatherConditions.getDescriptionKey(1000));
+        assertEquals(null, WeatherConditions.getArtSlug(-5));
+    }
+
+    // Utility.getArtUrlForWeatherCondition, with the slug it formatted into the URL
+    private static String oldArtSlug(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    private static String oldImageUrl(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+        } else if (weatherId == 511) {
+            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+        } else if (weatherId == 800) {
+            return "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
+        } else if (weatherId == 801) {
+            return "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
+        }
+        return null;
+    }
+
+    // Utility.getStringForWeatherCondition picked condition_2xx, condition_3xx,
+    // condition_<code> for the codes in its switch, or condition_unknown
+    private static int oldDescriptionKey(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return WeatherConditions.DESCRIPTION_2XX;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return WeatherConditions.DESCRIPTION_3XX;
+        }
+        for (int code : OLD_DESCRIBED_CODES) {
+            if (code == weatherId) {
+                return code;
+            }
+        }
+        return -1;
+    }
+}
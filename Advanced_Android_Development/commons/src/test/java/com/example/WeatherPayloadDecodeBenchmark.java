@@ -0,0 +1,40 @@
+package com.example;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+    Decodes a two week payload over and over into one instance, as the watch does, and prints
+    decodes per second.  Plain JVM, so it runs with the module's other tests.
+ */
+public class WeatherPayloadDecodeBenchmark {
+
+    private static final int WARM_UP = 100000;
+    private static final int ITERATIONS = 1000000;
+
+    @Test
+    public void decodeThroughput() {
+        byte[] encoded = WeatherPayloadTest.createPayload(WeatherPayload.MAX_DAYS).encode();
+        WeatherPayload payload = new WeatherPayload();
+
+        long checksum = 0;
+        for (int i = 0; i < WARM_UP; i++) {
+            payload.decode(encoded);
+            checksum += payload.getWeatherId(i % WeatherPayload.MAX_DAYS);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            payload.decode(encoded);
+            checksum += payload.getWeatherId(i % WeatherPayload.MAX_DAYS);
+        }
+        long nanos = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.US,
+                "%d byte payload: %.0f decodes/s, %.0f ns/decode (checksum %d)",
+                encoded.length, ITERATIONS * 1e9 / nanos, (double) nanos / ITERATIONS, checksum));
+        assertEquals(WeatherPayload.MAX_DAYS, payload.getDayCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WeatherPayloadTest {
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    // December 20th, 2014
+    private static final long TEST_DATE = 1419033600000L;
+
+    @Test
+    public void roundTripKeepsEveryField() {
+        WeatherPayload payload = createPayload(WeatherPayload.MAX_DAYS);
+        payload.setUnits(WeatherPayload.UNITS_IMPERIAL);
+
+        WeatherPayload decoded = new WeatherPayload();
+        decoded.decode(payload.encode());
+
+        assertEquals(WeatherPayload.UNITS_IMPERIAL, decoded.getUnits());
+        assertEquals(TEST_DATE + 1234, decoded.getTimestamp());
+        assertEquals(WeatherPayload.MAX_DAYS, decoded.getDayCount());
+        for (int i = 0; i < WeatherPayload.MAX_DAYS; i++) {
+            assertEquals(payload.getDate(i), decoded.getDate(i));
+            assertEquals(payload.getWeatherId(i), decoded.getWeatherId(i));
+            assertEquals(payload.getMaxTemp(i), decoded.getMaxTemp(i), 0);
+            assertEquals(payload.getMinTemp(i), decoded.getMinTemp(i), 0);
+        }
+    }
+
+    @Test
+    public void temperaturesKeepTenthsAndSign() {
+        WeatherPayload payload = new WeatherPayload();
+        payload.addDay(TEST_DATE, 600, -3.46, -12.04);
+
+        WeatherPayload decoded = new WeatherPayload();
+        decoded.decode(payload.encode());
+
+        assertEquals(-3.5f, decoded.getMaxTemp(0), 0.001f);
+        assertEquals(-12.0f, decoded.getMinTemp(0), 0.001f);
+    }
+
+    @Test
+    public void encodedSizeIsHeaderPlusFixedRecords() {
+        assertEquals(12, WeatherPayload.getEncodedSize(0));
+        assertEquals(12 + 14, createPayload(1).encode().length);
+        // two weeks fits in a couple of hundred bytes
+        assertEquals(12 + 14 * 14, createPayload(WeatherPayload.MAX_DAYS).encode().length);
+    }
+
+    @Test
+    public void decoderSkipsFieldsAddedLater() {
+        byte[] encoded = createPayload(2).encode();
+        // the same payload as a writer that appends two bytes to every day would make it
+        byte[] longer = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, longer, 0, WeatherPayload.HEADER_SIZE);
+        longer[11] = WeatherPayload.DAY_RECORD_SIZE + 2;
+        for (int i = 0; i < 2; i++) {
+            System.arraycopy(encoded, WeatherPayload.HEADER_SIZE + i * WeatherPayload.DAY_RECORD_SIZE,
+                    longer, WeatherPayload.HEADER_SIZE + i * (WeatherPayload.DAY_RECORD_SIZE + 2),
+                    WeatherPayload.DAY_RECORD_SIZE);
+        }
+
+        WeatherPayload decoded = new WeatherPayload();
+        decoded.decode(longer);
+        assertArrayEquals(encoded, decoded.encode());
+    }
+
+    @Test
+    public void rejectsUnknownVersionAndTruncatedPayloads() {
+        byte[] encoded = createPayload(3).encode();
+        WeatherPayload decoded = new WeatherPayload();
+
+        byte[] newer = encoded.clone();
+        newer[0] = WeatherPayload.VERSION + 1;
+        assertRejected(decoded, newer);
+
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        assertRejected(decoded, truncated);
+
+        assertRejected(decoded, new byte[3]);
+        assertEquals(0, decoded.getDayCount());
+    }
+
+    @Test
+    public void findDayPicksTheCurrentDay() {
+        WeatherPayload payload = createPayload(3);
+        assertEquals(0, payload.findDay(TEST_DATE - 1));
+        assertEquals(0, payload.findDay(TEST_DATE + DAY_IN_MILLIS / 2));
+        assertEquals(1, payload.findDay(TEST_DATE + DAY_IN_MILLIS));
+        assertEquals(2, payload.findDay(TEST_DATE + 10 * DAY_IN_MILLIS));
+        assertEquals(-1, new WeatherPayload().findDay(TEST_DATE));
+    }
+
+    @Test
+    public void contentHashIgnoresTimestamp() {
+        WeatherPayload payload = createPayload(3);
+        byte[] first = payload.encode();
+        payload.setTimestamp(TEST_DATE + 60000);
+        byte[] rebuilt = payload.encode();
+        payload.addDay(TEST_DATE + 3 * DAY_IN_MILLIS, 500, 15, 8);
+        byte[] changed = payload.encode();
+
+        assertEquals(WeatherPayload.contentHash(first), WeatherPayload.contentHash(rebuilt));
+        assertTrue(WeatherPayload.contentEquals(first, rebuilt));
+        assertFalse(WeatherPayload.contentHash(first) == WeatherPayload.contentHash(changed));
+        assertFalse(WeatherPayload.contentEquals(first, changed));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void holdsAtMostMaxDays() {
+        createPayload(WeatherPayload.MAX_DAYS).addDay(TEST_DATE, 800, 20, 10);
+    }
+
+    static WeatherPayload createPayload(int days) {
+        WeatherPayload payload = new WeatherPayload();
+        payload.setTimestamp(TEST_DATE + 1234);
+        for (int i = 0; i < days; i++) {
+            payload.addDay(TEST_DATE + i * DAY_IN_MILLIS, 800 + i % 5, 21.5 + i, 10.1 - i);
+        }
+        return payload;
+    }
+
+    private static void assertRejected(WeatherPayload payload, byte[] encoded) {
+        try {
+            payload.decode(encoded);
+            fail("Decoding should have failed");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().length() > 0);
+        }
+    }
+}
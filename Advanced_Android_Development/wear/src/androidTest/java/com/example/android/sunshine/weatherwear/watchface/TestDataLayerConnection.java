@@ -0,0 +1,112 @@
+package com.example.android.sunshine.weatherwear.watchface;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.DataLayerConnection;
+
+/*
+    Plays an hour of glancing at the watch against a made up clock and a fake client, and
+    counts connections.  Disconnecting on every hide, that hour was 30 connects and 30 passes
+    over all the data items.
+ */
+public class TestDataLayerConnection extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDataLayerConnection.class.getSimpleName();
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final long GRACE_MILLIS = DataLayerConnection.GRACE_MILLIS;
+    private static final long START_MILLIS = 1000000;
+
+    private FakeClient mClient;
+    private DataLayerConnection mConnection;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mClient = new FakeClient();
+        mConnection = new DataLayerConnection(mClient, GRACE_MILLIS, START_MILLIS);
+    }
+
+    public void testGlancesShareOneConnection() {
+        long now = START_MILLIS;
+        // a ten second look every two minutes
+        for (int i = 0; i < 30; i++) {
+            now = show(now, 10 * 1000);
+            now = hide(now, 2 * MINUTE_MILLIS - 10 * 1000);
+        }
+
+        Log.i(LOG_TAG, mConnection.getSummary(now));
+        assertEquals(1, mConnection.getConnectCount());
+        assertEquals(1, mConnection.getEnumerationCount());
+        assertEquals(0, mConnection.getDisconnectCount());
+        assertEquals(1, mConnection.getConnectsPerHour(now), 0.01);
+        assertTrue(mClient.connected);
+    }
+
+    public void testDisconnectsAfterGrace() {
+        long now = show(START_MILLIS, MINUTE_MILLIS);
+        now = hide(now, GRACE_MILLIS + MINUTE_MILLIS);
+        assertEquals(1, mConnection.getDisconnectCount());
+        assertFalse(mClient.connected);
+
+        // coming back after that needs a new connection and a fresh look at the items
+        now = show(now, MINUTE_MILLIS);
+        assertEquals(2, mConnection.getConnectCount());
+        assertEquals(2, mConnection.getEnumerationCount());
+        assertTrue(mClient.connected);
+    }
+
+    public void testStaleGraceCheckIsIgnored() {
+        long now = show(START_MILLIS, MINUTE_MILLIS);
+        mConnection.onHidden(now);
+        now += MINUTE_MILLIS;
+        mConnection.onVisible();
+        // the check posted when it was hidden fires late
+        mConnection.onGraceCheck(now + GRACE_MILLIS);
+        assertEquals(0, mConnection.getDisconnectCount());
+        assertTrue(mClient.connected);
+    }
+
+    // Shows the face for that long, like onVisibilityChanged(true) and what follows it
+    private long show(long now, long millis) {
+        mConnection.onVisible();
+        if (mClient.connectRequested) {
+            mClient.connectRequested = false;
+            mConnection.onConnected();
+            mConnection.onEnumerate();
+        }
+        return now + millis;
+    }
+
+    // Hides it for that long, running the grace check when the engine's handler would
+    private long hide(long now, long millis) {
+        long delay = mConnection.onHidden(now);
+        if (delay <= millis) {
+            mConnection.onGraceCheck(now + delay);
+        }
+        return now + millis;
+    }
+
+    static class FakeClient implements DataLayerConnection.Client {
+
+        boolean connected;
+        boolean connectRequested;
+
+        @Override
+        public void connect() {
+            connected = true;
+            connectRequested = true;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public boolean isConnectedOrConnecting() {
+            return connected;
+        }
+    }
+}
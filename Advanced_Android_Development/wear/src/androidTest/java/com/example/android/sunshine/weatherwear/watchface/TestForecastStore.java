@@ -0,0 +1,83 @@
+package com.example.android.sunshine.weatherwear.watchface;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.WeatherPayload;
+import com.explore.archana.weatherwear.ForecastStore;
+import com.explore.archana.weatherwear.WatchFaceState;
+import com.explore.archana.weatherwear.WeatherArtCache;
+
+import java.util.Arrays;
+
+/*
+    Saves a forecast, reads it back the way a newly created engine does, and times getting
+    from nothing to a state worth drawing.  Before, that took however long connecting to the
+    data layer and getDataItems took, usually well over a second after a reboot.
+ */
+public class TestForecastStore extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastStore.class.getSimpleName();
+
+    // 2014-12-20 00:00 UTC
+    private static final long TEST_DATE = 1419033600000L;
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+
+    private ForecastStore mStore;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStore = new ForecastStore(mContext);
+        mStore.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mStore.delete();
+        super.tearDown();
+    }
+
+    public void testNothingSavedLoadsNull() {
+        assertNull(mStore.load());
+    }
+
+    public void testSavedForecastComesBack() {
+        byte[] forecast = createForecast(21.6);
+        mStore.save(forecast);
+        assertTrue(Arrays.equals(forecast, new ForecastStore(mContext).load()));
+
+        // and the newest save wins
+        byte[] newer = createForecast(25);
+        mStore.save(newer);
+        assertTrue(Arrays.equals(newer, mStore.load()));
+    }
+
+    public void testColdStartState() {
+        mStore.save(createForecast(21.6));
+        WeatherArtCache artCache = new WeatherArtCache(mContext.getResources());
+
+        long start = SystemClock.elapsedRealtime();
+        WeatherPayload payload = new WeatherPayload();
+        payload.decode(new ForecastStore(mContext).load());
+        WatchFaceState state = WatchFaceState.fromPayload(WatchFaceState.EMPTY, payload,
+                TEST_DATE + DAY_IN_MILLIS + 1, artCache);
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        artCache.release();
+
+        Log.i(LOG_TAG, "cold start state from disk in " + elapsed + " ms");
+        // the second day is the one showing at that time
+        assertEquals(WatchFaceState.formatTemperature(18f), state.maxTemp);
+        assertEquals(WatchFaceState.formatTemperature(7f), state.minTemp);
+        assertTrue(state.artResId != -1);
+    }
+
+    private static byte[] createForecast(double maxTemp) {
+        WeatherPayload payload = new WeatherPayload();
+        payload.setTimestamp(TEST_DATE);
+        payload.addDay(TEST_DATE, 500, maxTemp, 8);
+        payload.addDay(TEST_DATE + DAY_IN_MILLIS, 800, 18, 7);
+        return payload.encode();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.android.sunshine.weatherwear.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.SimpleWatchFace;
+import com.explore.archana.weatherwear.WatchFaceState;
+
+import java.util.Locale;
+
+/*
+    Counts what SimpleWatchFace.draw() allocates once the watch face has drawn a few frames,
+    since on a watch any garbage per frame adds up.  Also times drawing everything each frame
+    against copying the cached layers and drawing just the time.
+ */
+public class TestSimpleWatchFace extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestSimpleWatchFace.class.getSimpleName();
+
+    private static final int WARM_UP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 100;
+    private static final int BENCHMARK_FRAMES = 1000;
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Rect mBounds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mBitmap = Bitmap.createBitmap(320, 320, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBounds = new Rect(0, 0, 320, 320);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mBitmap.recycle();
+        super.tearDown();
+    }
+
+    public void testDrawDoesNotAllocateAfterWarmUp() {
+        SimpleWatchFace watchFace = SimpleWatchFace.newInstance(mContext);
+        watchFace.setState(createState(21.6f, 12f));
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            watchFace.draw(mCanvas, mBounds);
+        }
+
+        int allocations = countDrawAllocations(watchFace, mBounds);
+        Log.i(LOG_TAG, allocations + " allocations in " + MEASURED_FRAMES + " frames");
+        assertTrue("Error: draw() allocated after warm up: " + allocations, allocations <= 0);
+    }
+
+    public void testNewLayoutStopsAllocatingAfterOneFrame() {
+        SimpleWatchFace watchFace = SimpleWatchFace.newInstance(mContext);
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            watchFace.draw(mCanvas, mBounds);
+        }
+
+        // New text and new bounds both get a fresh layout, then it's back to no garbage
+        Rect bounds = new Rect(0, 0, 280, 280);
+        watchFace.setState(createState(30f, 12f));
+        watchFace.draw(mCanvas, bounds);
+
+        int allocations = countDrawAllocations(watchFace, bounds);
+        assertTrue("Error: draw() kept allocating after the layout changed: " + allocations,
+                allocations <= 0);
+    }
+
+    public void testCachedLayersBenchmark() {
+        SimpleWatchFace watchFace = SimpleWatchFace.newInstance(mContext);
+        watchFace.setState(createState(21.6f, 12f));
+
+        watchFace.setLayerCacheEnabled(false);
+        long fullNanos = timeFrames(watchFace);
+        watchFace.setLayerCacheEnabled(true);
+        long cachedNanos = timeFrames(watchFace);
+        watchFace.release();
+
+        Log.i(LOG_TAG, String.format(Locale.US,
+                "%d frames: full redraw %.3f ms/frame, cached layers %.3f ms/frame",
+                BENCHMARK_FRAMES, fullNanos / 1e6 / BENCHMARK_FRAMES,
+                cachedNanos / 1e6 / BENCHMARK_FRAMES));
+    }
+
+    private static WatchFaceState createState(float maxTemp, float minTemp) {
+        return new WatchFaceState(WatchFaceState.formatTemperature(maxTemp),
+                WatchFaceState.formatTemperature(minTemp), -1, null);
+    }
+
+    private long timeFrames(SimpleWatchFace watchFace) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            watchFace.draw(mCanvas, mBounds);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_FRAMES; i++) {
+            watchFace.draw(mCanvas, mBounds);
+        }
+        return System.nanoTime() - start;
+    }
+
+    // Objects allocated drawing MEASURED_FRAMES frames, or -1 if the day changed meanwhile,
+    // since formatting the new date is allowed to allocate.
+    @SuppressWarnings("deprecation")
+    private int countDrawAllocations(SimpleWatchFace watchFace, Rect bounds) {
+        Time day = new Time();
+        day.setToNow();
+        int yearDay = day.yearDay;
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            watchFace.draw(mCanvas, bounds);
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        day.setToNow();
+        return day.yearDay == yearDay ? allocations : -1;
+    }
+}
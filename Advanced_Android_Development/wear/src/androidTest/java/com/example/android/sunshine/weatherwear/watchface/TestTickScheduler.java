@@ -0,0 +1,62 @@
+package com.example.android.sunshine.weatherwear.watchface;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.explore.archana.weatherwear.FrameStats;
+import com.explore.archana.weatherwear.TickScheduler;
+
+/*
+    Runs the tick schedule against a made up clock for an hour in each mode, and checks how
+    many frames that comes to.  With a one second loop it was 3600 an hour whatever was shown.
+ */
+public class TestTickScheduler extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestTickScheduler.class.getSimpleName();
+
+    private static final long HOUR_MILLIS = 60 * TickScheduler.MINUTE_MILLIS;
+    // 2016-06-23 10:15:42.318 UTC, in the middle of a minute
+    private static final long START_MILLIS = 1466676942318L;
+
+    public void testTicksLandOnBoundaries() {
+        assertEquals(60000 - 42318,
+                TickScheduler.getDelayToNextTick(START_MILLIS, TickScheduler.MINUTE_MILLIS));
+        assertEquals(1000 - 318,
+                TickScheduler.getDelayToNextTick(START_MILLIS, TickScheduler.SECOND_MILLIS));
+
+        // Right on a boundary means the next one, not now
+        long onMinute = START_MILLIS - START_MILLIS % TickScheduler.MINUTE_MILLIS;
+        assertEquals(TickScheduler.MINUTE_MILLIS,
+                TickScheduler.getDelayToNextTick(onMinute, TickScheduler.MINUTE_MILLIS));
+    }
+
+    public void testFramesPerHour() {
+        FrameStats stats = new FrameStats();
+        long now = START_MILLIS;
+
+        stats.setMode(FrameStats.MODE_INTERACTIVE_MINUTES, now);
+        now = runTicks(stats, now, TickScheduler.getTickPeriod(false));
+        stats.setMode(FrameStats.MODE_INTERACTIVE_SECONDS, now);
+        now = runTicks(stats, now, TickScheduler.getTickPeriod(true));
+        stats.setMode(FrameStats.MODE_HIDDEN, now);
+
+        Log.i(LOG_TAG, stats.getSummary(now));
+        // the first frame is drawn right away when the face becomes visible
+        assertEquals(61, stats.getFrameCount(FrameStats.MODE_INTERACTIVE_MINUTES));
+        assertEquals(3601, stats.getFrameCount(FrameStats.MODE_INTERACTIVE_SECONDS));
+        assertEquals(61, stats.getFramesPerHour(FrameStats.MODE_INTERACTIVE_MINUTES, now), 0.5);
+        assertEquals(3601, stats.getFramesPerHour(FrameStats.MODE_INTERACTIVE_SECONDS, now), 0.5);
+        assertEquals(0, stats.getFrameCount(FrameStats.MODE_AMBIENT));
+    }
+
+    // Draws a frame now and at every tick for the next hour, like the engine's time runnable
+    private static long runTicks(FrameStats stats, long startMillis, long periodMillis) {
+        long end = startMillis + HOUR_MILLIS;
+        long now = startMillis;
+        while (now <= end) {
+            stats.onFrame();
+            now += TickScheduler.getDelayToNextTick(now, periodMillis);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.android.sunshine.weatherwear.watchface;
+
+import android.test.AndroidTestCase;
+
+import com.example.WeatherPayload;
+import com.explore.archana.weatherwear.SimpleWatchFace;
+import com.explore.archana.weatherwear.WatchFaceState;
+import com.explore.archana.weatherwear.WeatherArtCache;
+
+/*
+    Checks a decoded forecast turns into a complete new WatchFaceState, leaving the previous
+    one as it was, the way the engine's data processing thread uses it.
+ */
+public class TestWatchFaceState extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+    // December 20th, 2014
+    private static final long TEST_DATE = 1419033600000L;
+
+    private WeatherArtCache mArtCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mArtCache = new WeatherArtCache(mContext.getResources());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mArtCache.release();
+        super.tearDown();
+    }
+
+    public void testFromPayloadPreparesEverything() {
+        WeatherPayload payload = new WeatherPayload();
+        payload.addDay(TEST_DATE, 500, 21.6, 12.0);
+
+        WatchFaceState state = WatchFaceState.fromPayload(WatchFaceState.EMPTY, payload,
+                TEST_DATE + 1000, mArtCache);
+
+        assertEquals("21\u00b0", state.maxTemp);
+        assertEquals("12\u00b0", state.minTemp);
+        assertEquals(SimpleWatchFace.getArtResourceForWeatherCondition(500), state.artResId);
+        assertNotNull("Error: the art should be decoded before the state is published",
+                state.weatherArt);
+        assertEquals(SimpleWatchFace.WEATHER_ART_SIZE, state.weatherArt.getWidth());
+
+        // the previous state is never touched
+        assertEquals("00\u00b0", WatchFaceState.EMPTY.maxTemp);
+        assertNull(WatchFaceState.EMPTY.weatherArt);
+    }
+
+    public void testShowsTheCurrentDay() {
+        WeatherPayload payload = new WeatherPayload();
+        payload.addDay(TEST_DATE, 800, 21, 12);
+        payload.addDay(TEST_DATE + DAY_IN_MILLIS, 800, 25, 14);
+
+        WatchFaceState state = WatchFaceState.fromPayload(WatchFaceState.EMPTY, payload,
+                TEST_DATE + DAY_IN_MILLIS + 1000, mArtCache);
+        assertEquals("25\u00b0", state.maxTemp);
+        assertEquals("14\u00b0", state.minTemp);
+    }
+
+    public void testRebuiltAtMidnightShowsTheNewDay() {
+        WeatherPayload payload = new WeatherPayload();
+        payload.addDay(TEST_DATE, 800, 21, 12);
+        payload.addDay(TEST_DATE + DAY_IN_MILLIS, 500, 16, 9);
+        WatchFaceState yesterday = WatchFaceState.fromPayload(WatchFaceState.EMPTY, payload,
+                TEST_DATE + DAY_IN_MILLIS - 1000, mArtCache);
+
+        // What the engine does when the day rolls over, with the same payload
+        WatchFaceState today = WatchFaceState.fromPayload(yesterday, payload,
+                TEST_DATE + DAY_IN_MILLIS + 1000, mArtCache);
+        assertEquals("16\u00b0", today.maxTemp);
+        assertEquals("9\u00b0", today.minTemp);
+        assertEquals(SimpleWatchFace.getArtResourceForWeatherCondition(500), today.artResId);
+        assertNotSame(yesterday.weatherArt, today.weatherArt);
+    }
+
+    public void testEmptyPayloadKeepsPreviousState() {
+        WatchFaceState state = WatchFaceState.fromPayload(WatchFaceState.EMPTY,
+                new WeatherPayload(), TEST_DATE, mArtCache);
+        assertSame(WatchFaceState.EMPTY, state);
+    }
+
+    public void testSameConditionDoesNotDecodeAgain() {
+        WeatherPayload payload = new WeatherPayload();
+        payload.addDay(TEST_DATE, 501, 21, 12);
+        WatchFaceState first = WatchFaceState.fromPayload(WatchFaceState.EMPTY, payload,
+                TEST_DATE, mArtCache);
+        payload.clear();
+        payload.addDay(TEST_DATE, 502, 22, 12);
+        WatchFaceState second = WatchFaceState.fromPayload(first, payload, TEST_DATE, mArtCache);
+
+        assertNotSame(first, second);
+        assertSame(first.weatherArt, second.weatherArt);
+        assertEquals(1, mArtCache.getDecodeCount());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.sunshine.weatherwear.watchface;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import com.explore.archana.weatherwear.R;
+import com.explore.archana.weatherwear.SimpleWatchFace;
+import com.explore.archana.weatherwear.WeatherArtCache;
+
+/*
+    Checks weather art is decoded at the size asked for, once per art and size, and that
+    asking again for the same condition comes straight from the cache.
+ */
+public class TestWeatherArtCache extends AndroidTestCase {
+
+    private static final int SIZE = SimpleWatchFace.WEATHER_ART_SIZE;
+
+    private WeatherArtCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new WeatherArtCache(mContext.getResources());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCache.release();
+        super.tearDown();
+    }
+
+    public void testArtIsDecodedAtTargetSize() {
+        Bitmap art = mCache.getArt(R.mipmap.art_rain, SIZE);
+        assertEquals(SIZE, art.getWidth());
+        assertEquals(SIZE, art.getHeight());
+
+        Bitmap larger = mCache.getArt(R.mipmap.art_rain, SIZE * 2);
+        assertEquals(SIZE * 2, larger.getWidth());
+        assertNotSame("Error: different sizes should be different entries", art, larger);
+    }
+
+    public void testSameConditionIsDecodedOnce() {
+        // light and heavy rain codes share the rain art
+        int rainArt = SimpleWatchFace.getArtResourceForWeatherCondition(500);
+        assertEquals(rainArt, SimpleWatchFace.getArtResourceForWeatherCondition(522));
+
+        Bitmap first = mCache.getArt(rainArt, SIZE);
+        Bitmap second = mCache.getArt(rainArt, SIZE);
+        assertSame("Error: the second request should come from the cache", first, second);
+        assertEquals(1, mCache.getDecodeCount());
+    }
+
+    public void testReleaseRecyclesArt() {
+        Bitmap art = mCache.getArt(R.mipmap.art_clear, SIZE);
+        mCache.release();
+        assertTrue("Error: release() should recycle the art", art.isRecycled());
+        assertNull(mCache.getArt(R.mipmap.art_clear, SIZE));
+    }
+}
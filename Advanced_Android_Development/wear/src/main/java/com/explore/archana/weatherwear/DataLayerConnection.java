@@ -0,0 +1,114 @@
+package com.explore.archana.weatherwear;
+
+import java.util.Locale;
+
+/**
+ * Decides when the watch face connects to and disconnects from the data layer, and counts
+ * how often it does.
+ *
+ * The face is hidden and shown again every time the wrist goes down and up, so rather than
+ * disconnecting as soon as it's hidden, the connection is kept for a grace period.  Coming
+ * back within it reuses the connection and its listener: no reconnect, and no going through
+ * every data item again.
+ *
+ * Everything here is called on the engine's main thread, with times from a monotonic clock,
+ * as from SystemClock.elapsedRealtime().
+ */
+public class DataLayerConnection {
+
+    // How long the connection stays up once the face is hidden
+    public static final long GRACE_MILLIS = 5 * 60 * 1000;
+
+    private static final double HOUR_MILLIS = 60 * 60 * 1000;
+
+    public interface Client {
+        void connect();
+
+        void disconnect();
+
+        boolean isConnectedOrConnecting();
+    }
+
+    private final Client client;
+    private final long graceMillis;
+    private final long startMillis;
+    // when the face was last hidden, or -1 while it's showing
+    private long hiddenSinceMillis = -1;
+    private int connectCount;
+    private int disconnectCount;
+    private int enumerationCount;
+
+    public DataLayerConnection(Client client, long graceMillis, long nowMillis) {
+        this.client = client;
+        this.graceMillis = graceMillis;
+        startMillis = nowMillis;
+    }
+
+    public void onVisible() {
+        hiddenSinceMillis = -1;
+        if (!client.isConnectedOrConnecting()) {
+            client.connect();
+        }
+    }
+
+    /**
+     * @return how long to wait before calling onGraceCheck()
+     */
+    public long onHidden(long nowMillis) {
+        hiddenSinceMillis = nowMillis;
+        return graceMillis;
+    }
+
+    /**
+     * Disconnects if the face has been hidden for the whole grace period.
+     */
+    public void onGraceCheck(long nowMillis) {
+        if (hiddenSinceMillis != -1 && nowMillis - hiddenSinceMillis >= graceMillis
+                && client.isConnectedOrConnecting()) {
+            client.disconnect();
+            disconnectCount++;
+        }
+    }
+
+    public void onConnected() {
+        connectCount++;
+    }
+
+    /**
+     * Call when all the data items are fetched, which only a new connection needs.
+     */
+    public void onEnumerate() {
+        enumerationCount++;
+    }
+
+    public int getConnectCount() {
+        return connectCount;
+    }
+
+    public int getDisconnectCount() {
+        return disconnectCount;
+    }
+
+    public int getEnumerationCount() {
+        return enumerationCount;
+    }
+
+    public double getConnectsPerHour(long nowMillis) {
+        return perHour(connectCount, nowMillis);
+    }
+
+    public double getEnumerationsPerHour(long nowMillis) {
+        return perHour(enumerationCount, nowMillis);
+    }
+
+    public String getSummary(long nowMillis) {
+        return String.format(Locale.US, "%d connects (%.1f/h), %d enumerations (%.1f/h)",
+                connectCount, getConnectsPerHour(nowMillis),
+                enumerationCount, getEnumerationsPerHour(nowMillis));
+    }
+
+    private double perHour(int count, long nowMillis) {
+        long millis = nowMillis - startMillis;
+        return millis == 0 ? 0 : count * HOUR_MILLIS / millis;
+    }
+}
@@ -0,0 +1,66 @@
+package com.explore.archana.weatherwear;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The last forecast the watch got from the phone, kept in a small file so a newly created
+ * watch face can show it straight away instead of waiting on the data layer.
+ *
+ * It's stored exactly as it arrived, an encoded WeatherPayload, so it's versioned the same
+ * way and a file from an older format simply fails to decode.  Writes go through an
+ * AtomicFile, so a crash mid-write leaves the previous forecast rather than half of one.
+ */
+public class ForecastStore {
+
+    private static final String TAG = "ForecastStore";
+
+    static final String FILE_NAME = "last_forecast";
+
+    private final AtomicFile file;
+
+    public ForecastStore(Context context) {
+        file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /**
+     * @return the saved forecast, or null if there's none or it can't be read
+     */
+    public byte[] load() {
+        try {
+            return file.readFully();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Can't read the saved forecast", e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the saved forecast.  This writes to disk, so keep it off the main thread.
+     */
+    public void save(byte[] forecast) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(forecast);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't save the forecast", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    public void delete() {
+        file.delete();
+    }
+}
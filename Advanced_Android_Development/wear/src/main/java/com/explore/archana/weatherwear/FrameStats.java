@@ -0,0 +1,66 @@
+package com.explore.archana.weatherwear;
+
+import java.util.Locale;
+
+/**
+ * Counts the frames the watch face draws in each mode and how long it spent in it, so we can
+ * see what the tick schedule costs as frames per hour.
+ */
+public class FrameStats {
+
+    public static final int MODE_HIDDEN = -1;
+    public static final int MODE_INTERACTIVE_MINUTES = 0;
+    public static final int MODE_INTERACTIVE_SECONDS = 1;
+    public static final int MODE_AMBIENT = 2;
+    private static final String[] MODE_NAMES = {"interactive", "interactive with seconds", "ambient"};
+
+    private static final double HOUR_MILLIS = 60 * 60 * 1000;
+
+    private final long[] frames = new long[MODE_NAMES.length];
+    private final long[] millis = new long[MODE_NAMES.length];
+    private int mode = MODE_HIDDEN;
+    private long modeStartMillis;
+
+    /**
+     * @param nowMillis time on a monotonic clock, as from SystemClock.elapsedRealtime()
+     */
+    public void setMode(int mode, long nowMillis) {
+        if (this.mode != MODE_HIDDEN) {
+            millis[this.mode] += nowMillis - modeStartMillis;
+        }
+        this.mode = mode;
+        modeStartMillis = nowMillis;
+    }
+
+    public void onFrame() {
+        if (mode != MODE_HIDDEN) {
+            frames[mode]++;
+        }
+    }
+
+    public long getFrameCount(int mode) {
+        return frames[mode];
+    }
+
+    /**
+     * @return frames drawn per hour spent in the mode, or 0 if it hasn't been used yet
+     */
+    public double getFramesPerHour(int mode, long nowMillis) {
+        long modeMillis = millis[mode];
+        if (mode == this.mode) {
+            modeMillis += nowMillis - modeStartMillis;
+        }
+        return modeMillis == 0 ? 0 : frames[mode] * HOUR_MILLIS / modeMillis;
+    }
+
+    public String getSummary(long nowMillis) {
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < MODE_NAMES.length; i++) {
+            summary.append(i == 0 ? "" : ", ").append(MODE_NAMES[i]).append(": ")
+                    .append(frames[i]).append(" frames, ")
+                    .append(String.format(Locale.US, "%.0f", getFramesPerHour(i, nowMillis)))
+                    .append("/h");
+        }
+        return summary.toString();
+    }
+}
@@ -16,17 +16,21 @@
 
 package com.explore.archana.weatherwear;
 
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
+import android.text.format.Time;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
 import com.example.WatchfaceSyncCommons;
+import com.example.WeatherPayload;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -39,7 +43,9 @@ import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Wearable;
 
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
@@ -56,17 +62,42 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             GoogleApiClient.ConnectionCallbacks,GoogleApiClient.OnConnectionFailedListener{
 
         private static final String TAG = "MyWatchFaceService";
-        private final long TICK_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(1);
 
         private SimpleWatchFace watchFace;
+        private WeatherArtCache artCache;
+        // DataItems are turned into WatchFaceStates here, off the thread that draws
+        private ExecutorService dataProcessor;
+        // decoded into over and over, only on dataProcessor (and in onCreate before it starts)
+        private final WeatherPayload payload = new WeatherPayload();
+        // The forecast on screen as it arrived, and when the phone built it; dataProcessor only
+        private byte[] shownForecast;
+        private long shownTimestamp;
+        // The day the shown state was built for; main thread only.  The forecast covers the
+        // coming days, so when this changes the state is built again from the same payload.
+        private final Time today = new Time();
+        private int shownYearDay;
+        private int shownYear;
+        private ForecastStore forecastStore;
+        // The newest state, swapped in whole by dataProcessor and read by onDraw
+        private final AtomicReference<WatchFaceState> state =
+                new AtomicReference<>(WatchFaceState.EMPTY);
+        private volatile boolean destroyed;
         private Handler timeTick;
+        private final FrameStats frameStats = new FrameStats();
+        // For timing how long after onCreate the first frame with real weather is drawn
+        private long createdMillis;
+        private volatile boolean hasForecast;
+        private boolean firstForecastFrameLogged;
 
         private GoogleApiClient googleApiClient;
+        private DataLayerConnection dataLayerConnection;
+        private boolean listening;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
             Log.d(TAG, "onCreate");
+            createdMillis = SystemClock.elapsedRealtime();
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(MyWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
@@ -78,14 +109,112 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             timeTick = new Handler(Looper.myLooper());
             startTimerIfNecessary();
             watchFace = SimpleWatchFace.newInstance(MyWatchFaceService.this);
+            artCache = new WeatherArtCache(getResources());
+            forecastStore = new ForecastStore(MyWatchFaceService.this);
+            // Done before dataProcessor starts so the very first frame already has weather;
+            // the data layer only has to bring anything newer.
+            today.setToNow();
+            shownYearDay = today.yearDay;
+            shownYear = today.year;
+            restoreForecast();
+            dataProcessor = Executors.newSingleThreadExecutor();
+            if (!hasForecast) {
+                // the launcher icon is shown until the first forecast arrives
+                dataProcessor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Bitmap art = artCache.getArt(R.mipmap.ic_launcher, SimpleWatchFace.WEATHER_ART_SIZE);
+                        WatchFaceState current = state.get();
+                        publishState(new WatchFaceState(current.maxTemp, current.minTemp,
+                                R.mipmap.ic_launcher, art));
+                    }
+                });
+            }
 
             googleApiClient = new GoogleApiClient.Builder(MyWatchFaceService.this)
                     .addConnectionCallbacks(this)
                     .addOnConnectionFailedListener(this)
                     .addApi(Wearable.API)
                     .build();
+            dataLayerConnection = new DataLayerConnection(dataLayerClient,
+                    DataLayerConnection.GRACE_MILLIS, SystemClock.elapsedRealtime());
         }
 
+        private final DataLayerConnection.Client dataLayerClient = new DataLayerConnection.Client() {
+            @Override
+            public void connect() {
+                googleApiClient.connect();
+            }
+
+            @Override
+            public void disconnect() {
+                releaseGoogleApiClient();
+            }
+
+            @Override
+            public boolean isConnectedOrConnecting() {
+                return googleApiClient.isConnected() || googleApiClient.isConnecting();
+            }
+        };
+
+        private final Runnable disconnectRunnable = new Runnable() {
+            @Override
+            public void run() {
+                dataLayerConnection.onGraceCheck(SystemClock.elapsedRealtime());
+                Log.d(TAG, "data layer: "
+                        + dataLayerConnection.getSummary(SystemClock.elapsedRealtime()));
+            }
+        };
+
+
+        // Reads the forecast saved last time and shows it.  It's a file of a couple of hundred
+        // bytes and one small piece of art, cheap enough to do on the main thread once.
+        private void restoreForecast() {
+            byte[] saved = forecastStore.load();
+            if (saved == null) {
+                return;
+            }
+            try {
+                payload.decode(saved);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Can't read the saved forecast", e);
+                forecastStore.delete();
+                return;
+            }
+            WatchFaceState restored = WatchFaceState.fromPayload(state.get(), payload,
+                    System.currentTimeMillis(), artCache);
+            if (restored != state.get()) {
+                shownForecast = saved;
+                shownTimestamp = payload.getTimestamp();
+                state.set(restored);
+                hasForecast = true;
+            }
+        }
+
+        // Called from the time ticks.  After midnight the face should show the new day's
+        // weather along with the new date, not wait for the phone's next sync.
+        private void updateDayIfNecessary() {
+            today.setToNow();
+            if (today.yearDay == shownYearDay && today.year == shownYear) {
+                return;
+            }
+            shownYearDay = today.yearDay;
+            shownYear = today.year;
+            Log.d(TAG, "new day, showing its forecast");
+            dataProcessor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (shownForecast == null) {
+                        return;
+                    }
+                    // payload may hold a forecast that failed to decode, so start again
+                    // from the one on screen
+                    payload.decode(shownForecast);
+                    publishState(WatchFaceState.fromPayload(state.get(), payload,
+                            System.currentTimeMillis(), artCache));
+                }
+            });
+        }
 
         private void startTimerIfNecessary() {
             timeTick.removeCallbacks(timeRunnable);
@@ -96,22 +225,50 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         private void releaseGoogleApiClient() {
             if (googleApiClient != null && googleApiClient.isConnected()) {
                 Wearable.DataApi.removeListener(googleApiClient,dataListener);
+            }
+            listening = false;
+            if (googleApiClient != null) {
                 googleApiClient.disconnect();
             }
         }
 
+        // Redraws, then sleeps until the start of the next minute (or second, if the face
+        // shows seconds), since nothing on screen changes before then.
         private final Runnable timeRunnable = new Runnable() {
             @Override
             public void run() {
-                onSecondTick();
+                updateDayIfNecessary();
+                invalidateIfNecessary();
                 if(isVisible() && !isInAmbientMode()){
-                    timeTick.postDelayed(this,TICK_PERIOD_MILLIS);
+                    long period = TickScheduler.getTickPeriod(watchFace.showsSeconds());
+                    timeTick.postDelayed(this,
+                            TickScheduler.getDelayToNextTick(System.currentTimeMillis(), period));
                 }
             }
         };
 
-        private void onSecondTick() {
-            invalidateIfNecessary();
+        // New weather should show up right away, even in ambient mode
+        private void invalidateForNewData() {
+            if (isVisible()) {
+                invalidate();
+            }
+        }
+
+        private void updateFrameStatsMode() {
+            int mode;
+            if (!isVisible()) {
+                mode = FrameStats.MODE_HIDDEN;
+            } else if (isInAmbientMode()) {
+                mode = FrameStats.MODE_AMBIENT;
+            } else if (watchFace.showsSeconds()) {
+                mode = FrameStats.MODE_INTERACTIVE_SECONDS;
+            } else {
+                mode = FrameStats.MODE_INTERACTIVE_MINUTES;
+            }
+            frameStats.setMode(mode, SystemClock.elapsedRealtime());
+            if (mode == FrameStats.MODE_HIDDEN) {
+                Log.d(TAG, "frames drawn: " + frameStats.getSummary(SystemClock.elapsedRealtime()));
+            }
         }
 
         private void invalidateIfNecessary() {
@@ -123,11 +280,16 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
+            // The connection outlives short trips away from the face, see DataLayerConnection
+            timeTick.removeCallbacks(disconnectRunnable);
             if(visible){
-                googleApiClient.connect();
+                updateDayIfNecessary();
+                dataLayerConnection.onVisible();
             }else{
-                releaseGoogleApiClient();
+                timeTick.postDelayed(disconnectRunnable,
+                        dataLayerConnection.onHidden(SystemClock.elapsedRealtime()));
             }
+            updateFrameStatsMode();
             startTimerIfNecessary();
         }
 
@@ -135,6 +297,7 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
+            updateFrameStatsMode();
             invalidate();
             startTimerIfNecessary();
         }
@@ -142,13 +305,20 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
+            updateDayIfNecessary();
             invalidate();
         }
 
         @Override
         public void onDestroy() {
+            destroyed = true;
             timeTick.removeCallbacks(timeRunnable);
+            timeTick.removeCallbacks(invalidateForNewDataRunnable);
+            timeTick.removeCallbacks(disconnectRunnable);
             releaseGoogleApiClient();
+            dataProcessor.shutdownNow();
+            watchFace.release();
+            artCache.release();
             super.onDestroy();
 
         }
@@ -156,14 +326,27 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
             super.onDraw(canvas, bounds);
+            watchFace.setState(state.get());
             watchFace.draw(canvas, bounds);
+            frameStats.onFrame();
+            if (!firstForecastFrameLogged && hasForecast) {
+                firstForecastFrameLogged = true;
+                Log.d(TAG, "first frame with weather "
+                        + (SystemClock.elapsedRealtime() - createdMillis) + " ms after onCreate");
+            }
         }
 
 
         @Override
         public void onConnected(Bundle bundle) {
             Log.d(TAG, "connected GoogleAPI");
-            Wearable.DataApi.addListener(googleApiClient, dataListener);
+            dataLayerConnection.onConnected();
+            if (!listening) {
+                Wearable.DataApi.addListener(googleApiClient, dataListener);
+                listening = true;
+            }
+            // Anything could have changed while we weren't connected
+            dataLayerConnection.onEnumerate();
             Wearable.DataApi.getDataItems(googleApiClient).setResultCallback(bufferResultCallback);
 
         }
@@ -185,46 +368,78 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                 Log.d(TAG,"data event");
                 for (DataEvent buffer:dataEvent){
                     if(buffer.getType() == DataEvent.TYPE_CHANGED){
-                        DataItem item = buffer.getDataItem();
-                        processesConfigurationFor(item);
+                        // the buffer's items are only valid until it's released
+                        processesConfigurationFor(buffer.getDataItem().freeze());
                     }
                 }
 
                 dataEvent.release();
-                invalidateIfNecessary();
             }
         };
 
-        private void processesConfigurationFor(DataItem item) {
+        // Hands the item to dataProcessor, which builds the next state from it and publishes
+        // that.  Items are processed in the order they arrive.
+        private void processesConfigurationFor(final DataItem item) {
             Log.d(TAG, " process config");
             if(WatchfaceSyncCommons.KEY_PATH.equals(item.getUri().getPath())) {
                 Log.d(TAG, " process config"+item.getUri().getPath());
-                DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
+                dataProcessor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
+                        byte[] forecast = dataMap.getByteArray(WatchfaceSyncCommons.KEY_FORECAST);
+                        if (forecast == null) {
+                            return;
+                        }
+                        // the data layer hands back what we restored from disk, too
+                        if (shownForecast != null
+                                && WeatherPayload.contentEquals(forecast, shownForecast)) {
+                            return;
+                        }
+                        try {
+                            payload.decode(forecast);
+                        } catch (IllegalArgumentException e) {
+                            Log.e(TAG, "Can't read the forecast", e);
+                            return;
+                        }
+                        if (payload.getTimestamp() < shownTimestamp) {
+                            Log.d(TAG, "ignoring a forecast older than the one shown");
+                            return;
+                        }
+                        shownForecast = forecast;
+                        shownTimestamp = payload.getTimestamp();
+                        hasForecast = true;
+                        publishState(WatchFaceState.fromPayload(state.get(), payload,
+                                System.currentTimeMillis(), artCache));
+                        forecastStore.save(forecast);
+                    }
+                });
+            }
+        }
 
-                if(dataMap.containsKey(WatchfaceSyncCommons.KEY_MAX_TEMP)){
-                    String updateMax = dataMap.getString(WatchfaceSyncCommons.KEY_MAX_TEMP);
-                    watchFace.updateMaxTemp(updateMax);
-                }
-                if(dataMap.containsKey(WatchfaceSyncCommons.KEY_MIN_TEMP)){
-                    String updateMin = dataMap.getString(WatchfaceSyncCommons.KEY_MIN_TEMP);
-                    watchFace.updateMinTemp(updateMin);
-                }
-                if(dataMap.containsKey(String.valueOf(WatchfaceSyncCommons.KEY_WEATHER_ID))){
-                    String updateBitmap = dataMap.getString(WatchfaceSyncCommons.KEY_WEATHER_ID);
-                    Log.d(TAG,"weatherID"+updateBitmap);
-                    watchFace.createBitmap(Integer.parseInt(updateBitmap));
-                }
+        // Called on dataProcessor, the only thread that writes state
+        private void publishState(WatchFaceState next) {
+            if (destroyed) {
+                return;
             }
+            state.set(next);
+            timeTick.post(invalidateForNewDataRunnable);
         }
 
+        private final Runnable invalidateForNewDataRunnable = new Runnable() {
+            @Override
+            public void run() {
+                invalidateForNewData();
+            }
+        };
+
         private final ResultCallback<DataItemBuffer> bufferResultCallback = new ResultCallback<DataItemBuffer>() {
             @Override
             public void onResult(DataItemBuffer dataItems) {
                 for(DataItem item:dataItems) {
-                    processesConfigurationFor(item);
+                    processesConfigurationFor(item.freeze());
                 }
                 dataItems.release();
-                invalidateIfNecessary();
             }
         };
     }
@@ -2,14 +2,13 @@ package com.explore.archana.weatherwear;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.text.format.Time;
-import android.util.Log;
+
+import com.example.WeatherConditions;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -21,7 +20,20 @@ import java.util.Date;
 public class SimpleWatchFace {
 
     private static final String TAG = "SimpleWatchFace";
-    private static final String TIME_FORMAT_WITHOUT_SECONDS = "%02d:%02d";
+    private static final String DATE_FORMAT = "E, MMM dd yyyy";
+    // text is measured at this size, then scaled to the width it should take up
+    private static final float TEST_TEXT_SIZE = 48f;
+    // The rest of the face is laid out under this rather than the actual time, so it doesn't
+    // move (and the layer cache doesn't need redrawing) when the minute changes.
+    private static final char[] REFERENCE_TIME_TEXT = "00:00:00".toCharArray();
+    // how big the weather art is drawn, in pixels each way
+    public static final int WEATHER_ART_SIZE = 40;
+    // Art for each WeatherConditions bucket
+    private static final int[] ARTS = {
+            -1, R.mipmap.art_storm, R.mipmap.art_light_rain, R.mipmap.art_rain,
+            R.mipmap.art_snow, R.mipmap.art_fog, R.mipmap.art_storm, R.mipmap.art_clear,
+            R.mipmap.art_light_clouds, R.mipmap.art_clouds
+    };
 
     private final Time time;
     private final Paint timePaint;
@@ -29,11 +41,40 @@ public class SimpleWatchFace {
     private final Paint tempMaxPaint;
     private final Paint tempMinPaint;
     private final Paint backgroundPaint;
+    private final Paint bitmapPaint = new Paint();
     private Context context;
 
-    private Bitmap weatherImage,resizedBitmap;
-    private  String maxTemp = "00"+ "\u00b0";
-    private  String minTemp = "00"+ "\u00b0";
+    // The weather being shown.  Only replaced from draw(), so a frame never mixes two.
+    private WatchFaceState state = WatchFaceState.EMPTY;
+
+    // Everything draw() needs is kept between frames, so a frame that shows the same minute
+    // as the last one allocates nothing.  The layout is worked out again only when the text
+    // or the bounds change.
+    private boolean showSeconds;
+    // "HH:MM", or "HH:MM:SS" when showing seconds
+    private final char[] timeText = new char[8];
+    private int timeTextLength;
+    private int timeHour = -1;
+    private int timeMinute = -1;
+    private int timeSecond = -1;
+    private final DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+    private final Date date = new Date();
+    private String dateText;
+    private int dateYear = -1;
+    private int dateYearDay = -1;
+    private final Rect textBounds = new Rect();
+    private final Rect layoutBounds = new Rect();
+    private boolean timeLayoutDirty = true;
+    private float timeXoffset, timeYoffset;
+
+    // The background, date, temperatures and weather art change at most once a day or once a
+    // sync, so they're drawn into layerCache and each frame only copies it and adds the time.
+    private boolean layerCacheEnabled = true;
+    private boolean layersDirty = true;
+    private Bitmap layerCache;
+    private Canvas layerCanvas;
+    private float dateXoffset, dateYoffset;
+    private float tempMaxXoffset, tempMaxYoffset, tempMinYOffset;
 
     public SimpleWatchFace(Context context, Paint timePaint, Paint datePaint, Paint tempMaxPaint, Paint tempMinPaint, Paint backPaint, Time time) {
         this.context = context;
@@ -43,9 +84,6 @@ public class SimpleWatchFace {
         this.tempMinPaint = tempMinPaint;
         this.backgroundPaint = backPaint;
         this.time = time;
-
-        weatherImage = BitmapFactory.decodeResource(context.getResources(),R.mipmap.ic_launcher);
-        resizedBitmap = Bitmap.createScaledBitmap(weatherImage, 40, 40, false);
     }
 
     public static SimpleWatchFace newInstance(Context context){
@@ -82,33 +120,163 @@ public class SimpleWatchFace {
 
     public void draw(Canvas canvas,Rect rect){
 
-        canvas.drawRect(0, 0, rect.width(), rect.height(), backgroundPaint);
         time.setToNow();
 
-        String timeText = String.format(TIME_FORMAT_WITHOUT_SECONDS, time.hour, time.minute);
-        setTextSizeForWidth(timePaint, 200, timeText);
-        float timeXoffset = computeXOffset(timeText, timePaint, rect);
-        float timeYoffset = computeTimeYOffset(timeText, timePaint, rect);
-        canvas.drawText(timeText, timeXoffset, timeYoffset, timePaint);
+        updateTimeText();
+        updateDateText();
+        if (!layoutBounds.equals(rect)) {
+            layoutBounds.set(rect);
+            layersDirty = true;
+        }
+        if (layersDirty) {
+            computeLayerLayout(rect);
+            timeLayoutDirty = true;
+        }
+        if (timeLayoutDirty) {
+            computeTimeLayout(rect);
+        }
 
-        DateFormat df5 = new SimpleDateFormat("E, MMM dd yyyy");
-        Date date = new Date();
-        String dateText = df5.format(date);
-        setTextSizeForWidth(datePaint, 200, dateText);
-        float dateXoffset = computeXOffset(dateText, datePaint, rect);
-        float dateYoffset = computeDateYOffset(dateText, datePaint);
+        if (layerCacheEnabled) {
+            if (layersDirty) {
+                renderLayerCache(rect);
+            }
+            canvas.drawBitmap(layerCache, rect.left, rect.top, bitmapPaint);
+        } else {
+            drawLayers(canvas, rect);
+        }
+        layersDirty = false;
+
+        canvas.drawText(timeText, 0, timeTextLength, timeXoffset, timeYoffset, timePaint);
+    }
+
+    private void drawLayers(Canvas canvas, Rect rect) {
+        canvas.drawRect(0, 0, rect.width(), rect.height(), backgroundPaint);
         canvas.drawText(dateText, dateXoffset, timeYoffset + dateYoffset, datePaint);
+        canvas.drawText(state.maxTemp, tempMaxXoffset, timeYoffset + dateYoffset + tempMaxYoffset + 20, tempMaxPaint);
+        canvas.drawText(state.minTemp, tempMaxXoffset + 80, timeYoffset + dateYoffset + tempMinYOffset + 20, tempMinPaint);
+
+        Bitmap weatherArt = state.weatherArt;
+        if (weatherArt != null) {
+            canvas.drawBitmap(weatherArt, rect.exactCenterX()-weatherArt.getWidth()-40 , timeYoffset + dateYoffset + 20, bitmapPaint);
+        }
+    }
+
+    private void renderLayerCache(Rect rect) {
+        if (layerCache == null
+                || layerCache.getWidth() != rect.width() || layerCache.getHeight() != rect.height()) {
+            if (layerCache != null) {
+                layerCache.recycle();
+            }
+            layerCache = Bitmap.createBitmap(rect.width(), rect.height(), Bitmap.Config.ARGB_8888);
+            layerCanvas = new Canvas(layerCache);
+        }
+        layerCanvas.save();
+        // the cache starts at the top left of the bounds
+        layerCanvas.translate(-rect.left, -rect.top);
+        drawLayers(layerCanvas, rect);
+        layerCanvas.restore();
+    }
+
+    /**
+     * Draws everything on every frame instead of going through the layer cache, which is only
+     * useful to compare the two.
+     */
+    public void setLayerCacheEnabled(boolean enabled) {
+        layerCacheEnabled = enabled;
+        layersDirty = true;
+    }
+
+    /**
+     * Frees the layer cache and lets go of the weather art.  The next frame draws the cache
+     * again.
+     */
+    public void release() {
+        state = WatchFaceState.EMPTY;
+        if (layerCache != null) {
+            layerCache.recycle();
+            layerCache = null;
+            layerCanvas = null;
+        }
+        layersDirty = true;
+    }
+
+    /**
+     * Whether the time is drawn with seconds.  The engine uses this to decide how often it
+     * needs to redraw.
+     */
+    public boolean showsSeconds() {
+        return showSeconds;
+    }
+
+    public void setShowSeconds(boolean showSeconds) {
+        this.showSeconds = showSeconds;
+        timeHour = -1;
+        layersDirty = true;
+    }
 
-        setTextSizeForWidth(tempMaxPaint, 40, maxTemp);
-        float tempMaxXoffset = computeXOffset(maxTemp, tempMaxPaint, rect);
-        float tempMaxYoffset = computeDateYOffset(maxTemp, tempMaxPaint);
-        canvas.drawText(maxTemp, tempMaxXoffset, timeYoffset + dateYoffset + tempMaxYoffset + 20, tempMaxPaint);
+    // Writes the time into timeText when what's shown of it changes
+    private void updateTimeText() {
+        int second = showSeconds ? time.second : 0;
+        if (time.hour == timeHour && time.minute == timeMinute && second == timeSecond) {
+            return;
+        }
+        timeHour = time.hour;
+        timeMinute = time.minute;
+        timeSecond = second;
+        timeText[0] = (char) ('0' + timeHour / 10);
+        timeText[1] = (char) ('0' + timeHour % 10);
+        timeText[2] = ':';
+        timeText[3] = (char) ('0' + timeMinute / 10);
+        timeText[4] = (char) ('0' + timeMinute % 10);
+        timeTextLength = 5;
+        if (showSeconds) {
+            timeText[5] = ':';
+            timeText[6] = (char) ('0' + timeSecond / 10);
+            timeText[7] = (char) ('0' + timeSecond % 10);
+            timeTextLength = 8;
+        }
+        timeLayoutDirty = true;
+    }
+
+    // Formats the date once a day
+    private void updateDateText() {
+        if (time.yearDay == dateYearDay && time.year == dateYear) {
+            return;
+        }
+        dateYear = time.year;
+        dateYearDay = time.yearDay;
+        date.setTime(time.toMillis(false));
+        dateText = dateFormat.format(date);
+        layersDirty = true;
+    }
+
+    private void computeTimeLayout(Rect rect) {
+        timeLayoutDirty = false;
+        setTextSizeForWidth(timePaint, 200, timeText, timeTextLength);
+        timeXoffset = computeXOffset(timeText, timeTextLength, timePaint, rect);
+    }
+
+    private void computeLayerLayout(Rect rect) {
+        int referenceLength = showSeconds ? 8 : 5;
+        setTextSizeForWidth(timePaint, 200, REFERENCE_TIME_TEXT, referenceLength);
+        timeYoffset = computeTimeYOffset(REFERENCE_TIME_TEXT, referenceLength, timePaint, rect);
+
+        setTextSizeForWidth(datePaint, 200, dateText);
+        dateXoffset = computeXOffset(dateText, datePaint, rect);
+        dateYoffset = computeDateYOffset(dateText, datePaint);
 
-        setTextSizeForWidth(tempMinPaint, 40, minTemp);
-        float tempMinYOffset = computeDateYOffset(minTemp, tempMinPaint);
-        canvas.drawText(minTemp, tempMaxXoffset + 80, timeYoffset + dateYoffset + tempMinYOffset + 20, tempMinPaint);
+        setTextSizeForWidth(tempMaxPaint, 40, state.maxTemp);
+        tempMaxXoffset = computeXOffset(state.maxTemp, tempMaxPaint, rect);
+        tempMaxYoffset = computeDateYOffset(state.maxTemp, tempMaxPaint);
 
-        canvas.drawBitmap(resizedBitmap, rect.exactCenterX()-resizedBitmap.getWidth()-40 , timeYoffset + dateYoffset + 20, new Paint());
+        setTextSizeForWidth(tempMinPaint, 40, state.minTemp);
+        tempMinYOffset = computeDateYOffset(state.minTemp, tempMinPaint);
+    }
+
+    private float computeXOffset(char[] text, int length, Paint paint, Rect watchBounds) {
+        float centerX = watchBounds.exactCenterX();
+        float timeLength = paint.measureText(text, 0, length);
+        return centerX - (timeLength/2f);
     }
 
     private float computeXOffset(String text, Paint paint, Rect watchBounds) {
@@ -117,102 +285,51 @@ public class SimpleWatchFace {
         return centerX - (timeLength/2f);
     }
 
-    private float computeTimeYOffset(String timeText, Paint timePaint, Rect watchBounds) {
+    private float computeTimeYOffset(char[] timeText, int length, Paint timePaint, Rect watchBounds) {
         float centerY = watchBounds.exactCenterY();
-        Rect textBounds = new Rect();
-        timePaint.getTextBounds(timeText, 0, timeText.length(), textBounds);
+        timePaint.getTextBounds(timeText, 0, length, textBounds);
         int textHeight = textBounds.height();
         return centerY + (textHeight / 10f);
     }
 
-    private static void setTextSizeForWidth(Paint paint, float desiredWidth, String text) {
-        final float testTextSize = 48f;
+    private void setTextSizeForWidth(Paint paint, float desiredWidth, char[] text, int length) {
+        // Get the bounds of the text, using our testTextSize.
+        paint.setTextSize(TEST_TEXT_SIZE);
+        paint.getTextBounds(text, 0, length, textBounds);
+        setTextSizeForWidth(paint, desiredWidth, textBounds);
+    }
 
+    private void setTextSizeForWidth(Paint paint, float desiredWidth, String text) {
         // Get the bounds of the text, using our testTextSize.
-        paint.setTextSize(testTextSize);
-        Rect bounds = new Rect();
-        paint.getTextBounds(text, 0, text.length(), bounds);
+        paint.setTextSize(TEST_TEXT_SIZE);
+        paint.getTextBounds(text, 0, text.length(), textBounds);
+        setTextSizeForWidth(paint, desiredWidth, textBounds);
+    }
 
+    private static void setTextSizeForWidth(Paint paint, float desiredWidth, Rect bounds) {
         // Calculate the desired size as a proportion of our testTextSize.
-        float desiredTextSize = testTextSize * desiredWidth / bounds.width();
-
+        float desiredTextSize = TEST_TEXT_SIZE * desiredWidth / bounds.width();
 
         // Set the paint for that size.
         paint.setTextSize(desiredTextSize);
     }
 
     private float computeDateYOffset(String dateText, Paint datePaint) {
-        Rect textBounds = new Rect();
         datePaint.getTextBounds(dateText, 0, dateText.length(), textBounds);
         return textBounds.height() + 10.0f;
     }
 
-    public void updateMaxTemp(String max){
-        Log.d(TAG,max);
-        maxTemp = convertToDigit(max)+"\u00b0";
-
-    }
-    public void updateMinTemp(String min){
-        Log.d(TAG,min);
-        minTemp = convertToDigit(min)+"\u00b0";
-    }
-
-    public void createBitmap(int weatherId){
-        if(weatherId != 00) {
-            Log.d(TAG, Integer.toString(weatherId));
-            weatherImage = getResizedBitmap(BitmapFactory.decodeResource(context.getResources(), getArtResourceForWeatherCondition(weatherId)),60,60);
+    /**
+     * Shows new weather from the next frame on.  Call it from the thread that draws.
+     */
+    public void setState(WatchFaceState state){
+        if (state != this.state) {
+            this.state = state;
+            layersDirty = true;
         }
     }
 
-    private static String convertToDigit(String d){
-        if (Float.valueOf(d)==(float)Float.valueOf(d)){
-            return Integer.toString(Float.valueOf(d).intValue());
-        }else
-            return String.format("%s",d);
-    }
-
-
     public static int getArtResourceForWeatherCondition(int weatherId) {
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.mipmap.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.mipmap.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.mipmap.art_rain;
-        } else if (weatherId == 511) {
-            return R.mipmap.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.mipmap.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.mipmap.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.mipmap.art_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.mipmap.art_storm;
-        } else if (weatherId == 800) {
-            return R.mipmap.art_clear;
-        } else if (weatherId == 801) {
-            return R.mipmap.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.mipmap.art_clouds;
-        }
-        return -1;
-    }
-
-    public Bitmap getResizedBitmap(Bitmap bm, int newWidth, int newHeight) {
-        int width = bm.getWidth();
-        int height = bm.getHeight();
-        float scaleWidth = ((float) newWidth) / width;
-        float scaleHeight = ((float) newHeight) / height;
-        // CREATE A MATRIX FOR THE MANIPULATION 
-        Matrix matrix = new Matrix();
-        // RESIZE THE BIT MAP 
-        matrix.postScale(scaleWidth, scaleHeight);
-
-        // "RECREATE" THE NEW BITMAP 
-        Bitmap resizedBitmap = Bitmap.createBitmap(
-                bm, 0, 0, width, height, matrix, false);
-        bm.recycle();
-        return resizedBitmap;
+        return ARTS[WeatherConditions.getBucket(weatherId)];
     }
 }
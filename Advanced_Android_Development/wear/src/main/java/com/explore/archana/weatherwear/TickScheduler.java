@@ -0,0 +1,30 @@
+package com.explore.archana.weatherwear;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out when the watch face next has to redraw, going by what it shows.  The time is
+ * drawn as HH:MM, so in between minutes every frame would come out the same; we only wake
+ * up at the start of the next minute, or of the next second when seconds are shown.
+ */
+public class TickScheduler {
+
+    public static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final long SECOND_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private TickScheduler() {
+    }
+
+    public static long getTickPeriod(boolean showsSeconds) {
+        return showsSeconds ? SECOND_MILLIS : MINUTE_MILLIS;
+    }
+
+    /**
+     * @param nowMillis wall clock time, as from System.currentTimeMillis()
+     * @return how long until the next multiple of periodMillis, which is never 0 so a tick
+     * that runs a little early doesn't get scheduled again right away
+     */
+    public static long getDelayToNextTick(long nowMillis, long periodMillis) {
+        return periodMillis - (nowMillis % periodMillis);
+    }
+}
@@ -0,0 +1,69 @@
+package com.explore.archana.weatherwear;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.WeatherPayload;
+
+/**
+ * Everything the watch face shows about the weather, ready to draw: temperatures already
+ * formatted and art already decoded at the size it's drawn.  A state never changes once
+ * built; new weather means a new state, so the draw thread always sees all of one update or
+ * none of it.
+ */
+public final class WatchFaceState {
+
+    private static final String TAG = "WatchFaceState";
+
+    public static final WatchFaceState EMPTY =
+            new WatchFaceState("00" + "\u00b0", "00" + "\u00b0", -1, null);
+
+    public final String maxTemp;
+    public final String minTemp;
+    // the art resource weatherArt was decoded from, or -1
+    public final int artResId;
+    // WEATHER_ART_SIZE square, owned by WeatherArtCache; null until there's something to show
+    public final Bitmap weatherArt;
+
+    public WatchFaceState(String maxTemp, String minTemp, int artResId, Bitmap weatherArt) {
+        this.maxTemp = maxTemp;
+        this.minTemp = minTemp;
+        this.artResId = artResId;
+        this.weatherArt = weatherArt;
+    }
+
+    /**
+     * Builds the state showing the payload's day for the given time.  Art that can't be
+     * decoded keeps the previous one.  This may decode art, so don't call it on the main
+     * thread.
+     */
+    public static WatchFaceState fromPayload(WatchFaceState previous, WeatherPayload payload,
+                                             long timeMillis, WeatherArtCache artCache) {
+        int day = payload.findDay(timeMillis);
+        if (day == -1) {
+            return previous;
+        }
+        int artResId = previous.artResId;
+        Bitmap weatherArt = previous.weatherArt;
+
+        int weatherId = payload.getWeatherId(day);
+        Log.d(TAG, "weatherID" + weatherId);
+        int newArtResId = SimpleWatchFace.getArtResourceForWeatherCondition(weatherId);
+        if (newArtResId != -1 && newArtResId != artResId) {
+            Bitmap art = artCache.getArt(newArtResId, SimpleWatchFace.WEATHER_ART_SIZE);
+            if (art != null) {
+                artResId = newArtResId;
+                weatherArt = art;
+            }
+        }
+        return new WatchFaceState(formatTemperature(payload.getMaxTemp(day)),
+                formatTemperature(payload.getMinTemp(day)), artResId, weatherArt);
+    }
+
+    /**
+     * 21.6 becomes "21" and a degree sign, as the face has always shown it.
+     */
+    public static String formatTemperature(float temperature) {
+        return Integer.toString((int) temperature) + "\u00b0";
+    }
+}
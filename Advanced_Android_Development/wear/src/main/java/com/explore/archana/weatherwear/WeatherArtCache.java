@@ -0,0 +1,146 @@
+package com.explore.archana.weatherwear;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weather art for the watch face, decoded once per art resource and size and kept until the
+ * face goes away.  Art is decoded only as large as the target size needs (inSampleSize, no
+ * density scaling), into bitmaps reused from earlier decodes.
+ *
+ * Every condition in a bucket (all the rain codes, say) maps to the same art resource, so
+ * they share one entry, and asking again for what's already there costs a lookup.  Decoding
+ * happens on the calling thread, which is the engine's data processing thread, never the
+ * one drawing the face.
+ */
+public class WeatherArtCache {
+
+    private static final String TAG = "WeatherArtCache";
+
+    // Decoded bitmaps kept around to decode the next art into
+    private static final int MAX_POOL_SIZE = 2;
+
+    private final Resources resources;
+    private final LongSparseArray<Bitmap> art = new LongSparseArray<>();
+    private final List<Bitmap> pool = new ArrayList<>();
+    private boolean released;
+    private int decodeCount;
+
+    public WeatherArtCache(Resources resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * @return the art, sizePx square, decoding it first if it isn't cached yet; null if it
+     * can't be decoded or the cache has been released
+     */
+    public synchronized Bitmap getArt(int resId, int sizePx) {
+        if (released) {
+            return null;
+        }
+        long key = key(resId, sizePx);
+        Bitmap cached = art.get(key);
+        if (cached == null) {
+            cached = decode(resId, sizePx);
+            if (cached != null) {
+                decodeCount++;
+                art.put(key, cached);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * How many times art has actually been decoded, rather than found in the cache.
+     */
+    public synchronized int getDecodeCount() {
+        return decodeCount;
+    }
+
+    /**
+     * Recycles all the art.  Don't draw anything this handed out after calling it.
+     */
+    public synchronized void release() {
+        released = true;
+        for (int i = 0; i < art.size(); i++) {
+            art.valueAt(i).recycle();
+        }
+        art.clear();
+        for (Bitmap bitmap : pool) {
+            bitmap.recycle();
+        }
+        pool.clear();
+    }
+
+    private Bitmap decode(int resId, int sizePx) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e(TAG, "Can't decode art " + resId);
+            return null;
+        }
+
+        // The largest power of two that still leaves the image at least sizePx across
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= sizePx
+                && options.outHeight / (sampleSize * 2) >= sizePx) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        // we size it ourselves, so don't let the resource density scale it first
+        options.inScaled = false;
+        options.inMutable = true;
+        options.inBitmap = takeFromPool(
+                (options.outWidth + sampleSize - 1) / sampleSize,
+                (options.outHeight + sampleSize - 1) / sampleSize);
+
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeResource(resources, resId, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap didn't suit after all
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeResource(resources, resId, options);
+        }
+        if (decoded == null) {
+            Log.e(TAG, "Can't decode art " + resId);
+            return null;
+        }
+        if (decoded.getWidth() == sizePx && decoded.getHeight() == sizePx) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, sizePx, sizePx, true);
+        returnToPool(decoded);
+        return scaled;
+    }
+
+    private Bitmap takeFromPool(int width, int height) {
+        int byteCount = width * height * 4;
+        for (int i = 0; i < pool.size(); i++) {
+            if (pool.get(i).getAllocationByteCount() >= byteCount) {
+                return pool.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private void returnToPool(Bitmap bitmap) {
+        if (pool.size() < MAX_POOL_SIZE) {
+            pool.add(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
+    private static long key(int resId, int sizePx) {
+        return ((long) resId << 32) | sizePx;
+    }
+}